@@ -0,0 +1,115 @@
+package jump61;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** JMH benchmark of AI search to a fixed depth, on one thread, on the
+ *  curated opening, middlegame, and endgame positions of each board size
+ *  in Positions.CURATED.  Each search starts with empty tables (see
+ *  AI.forget), so it visits the same positions every time, and JMH
+ *  reports the time per search.  At the end of each run, the benchmark
+ *  also prints the move chosen, the depth completed (less than the
+ *  depth asked for if the outcome was found to be certain), the number
+ *  of positions visited per search, and the number visited per second,
+ *  so that changes to the search or the Board engine can be compared
+ *  with a baseline.
+ *  @author Ryan Shih
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AIBench {
+
+    /** Name of the position searched in Positions.CURATED. */
+    @Param({ "4-opening", "4-middlegame", "4-endgame",
+             "5-opening", "5-middlegame", "5-endgame",
+             "6-opening", "6-middlegame", "6-endgame",
+             "7-opening", "7-middlegame", "7-endgame",
+             "8-opening", "8-middlegame", "8-endgame",
+             "9-opening", "9-middlegame", "9-endgame",
+             "10-opening", "10-middlegame", "10-endgame" })
+    public String position;
+
+    /** Search depth. */
+    @Param({ "5" })
+    public int depth;
+
+    /** Load the position and make the AI that searches it. */
+    @Setup
+    public void setUp() {
+        _board = Positions.curated(position);
+        _player = _board.whoseMove();
+        _ai = new AI(new Game(null, (b) -> { }, null, false), _player,
+                     SEED);
+    }
+
+    /** Clear what the last search learned, untimed. */
+    @Setup(Level.Invocation)
+    public void forget() {
+        _ai.forget();
+    }
+
+    /** Search the position, returning the square number of the move
+     *  chosen. */
+    @Benchmark
+    public int search() {
+        _move = _ai.searchForMove(_board, _player, depth,
+                                  System.nanoTime() + NO_LIMIT, 1, false);
+        SearchStats stats = _ai.stats();
+        _searches += 1;
+        _nodes += stats.nodes();
+        _time += stats.time();
+        _completed = stats.depth();
+        return _move;
+    }
+
+    /** Print what the searches found. */
+    @TearDown
+    public void report() {
+        System.out.printf("%n%s: move %s, depth %d, %d nodes per search, "
+                          + "%d nodes/s%n", position,
+                          _board.moveString(_move), _completed,
+                          _nodes / Math.max(1, _searches),
+                          _time == 0 ? 0 : (long) (_nodes * 1e9 / _time));
+    }
+
+    /** Seed for the AI. */
+    static final long SEED = 61;
+
+    /** A time limit, in nanoseconds, that no search reaches. */
+    static final long NO_LIMIT = Long.MAX_VALUE / 2;
+
+    /** The position. */
+    private Board _board;
+    /** The player to move in _board. */
+    private Side _player;
+    /** The searcher. */
+    private AI _ai;
+    /** The move chosen by the last search. */
+    private int _move;
+    /** The depth completed by the last search. */
+    private int _completed;
+    /** Number of searches made. */
+    private long _searches;
+    /** Total positions visited by those searches. */
+    private long _nodes;
+    /** Total time taken by those searches, in nanoseconds. */
+    private long _time;
+
+}
@@ -0,0 +1,98 @@
+package jump61;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** JMH throughput benchmarks for the Board engine, on seeded positions of
+ *  each kind in Positions (reached by random play, or with a block of full
+ *  squares, so that every move timed cascades) for normal and large board
+ *  sizes.  A move is timed together with the undo that restores the
+ *  position, as during search; UndoBench times undo alone.  Run with
+ *  -prof gc (as 'make jmh' does) to see allocation per operation
+ *  (gc.alloc.rate.norm).
+ *  @author Ryan Shih
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBench {
+
+    /** Number of squares on a side. */
+    @Param({ "4", "5", "6", "7", "8", "9", "10", "64", "256", "1024" })
+    public int size;
+
+    /** Kind of position (see Positions). */
+    @Param({ Positions.RANDOM, Positions.CASCADE })
+    public String kind;
+
+    /** Make the position and the moves to be timed. */
+    @Setup
+    public void setUp() {
+        _board = Positions.position(kind, size, SEED);
+        _moves = Positions.moves(_board, kind.equals(Positions.CASCADE),
+                                 MOVES, SEED);
+        _player = _board.whoseMove();
+        _copy = new Board(size);
+    }
+
+    /** Make the next move in the list and undo it, returning the number
+     *  of spots it left on the board.  On CASCADE positions, each move
+     *  sets off a cascade. */
+    @Benchmark
+    public int addSpotUndo() {
+        int n = _moves[_next];
+        _next = (_next + 1) & (MOVES - 1);
+        _board.addSpot(_player, n);
+        int result = _board.numPieces();
+        _board.undo();
+        return result;
+    }
+
+    /** Return true iff the game is over.  (Benchmark methods return
+     *  only public types, which the code JMH generates, outside this
+     *  package, can use.) */
+    @Benchmark
+    public boolean getWinner() {
+        return _board.getWinner() != null;
+    }
+
+    /** Copy the position into another board, returning the number of
+     *  spots copied. */
+    @Benchmark
+    public int copy() {
+        _copy.copy(_board);
+        return _copy.numPieces();
+    }
+
+    /** Number of moves in the list (a power of 2). */
+    static final int MOVES = 1024;
+
+    /** Seed for the positions and moves. */
+    static final long SEED = 61;
+
+    /** The position. */
+    private Board _board;
+    /** The player to move in _board. */
+    private Side _player;
+    /** The moves timed, in order. */
+    private int[] _moves;
+    /** Index of the next move in _moves. */
+    private int _next;
+    /** The board into which _board is copied. */
+    private Board _copy;
+
+}
@@ -0,0 +1,139 @@
+package jump61;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static jump61.Side.*;
+
+/** Seeded positions and move lists shared by the JMH benchmarks.
+ *  @author Ryan Shih
+ */
+final class Positions {
+
+    /** Kinds of position: reached by random play, or with squares full,
+     *  so that moves there set off cascades. */
+    static final String RANDOM = "random", CASCADE = "cascade";
+
+    /** Largest side of the block of full squares in a CASCADE position.
+     *  A cascade through a whole large board takes many seconds, far too
+     *  long for one benchmark operation. */
+    static final int BLOCK = 48;
+
+    /** Resource holding the curated positions, as names, each followed by
+     *  a board dump. */
+    static final String CURATED = "positions.txt";
+
+    /** Return a SIZE x SIZE position of kind KIND (RANDOM or CASCADE),
+     *  made with random numbers from SEED. */
+    static Board position(String kind, int size, long seed) {
+        switch (kind) {
+        case RANDOM:
+            return randomPlay(size, seed);
+        case CASCADE:
+            return saturated(size, seed);
+        default:
+            throw new IllegalArgumentException("unknown position kind: "
+                                               + kind);
+        }
+    }
+
+    /** Return the position reached by up to SIZE * SIZE random moves
+     *  from an empty SIZE x SIZE board, using random numbers from SEED,
+     *  stopping before any move that would end the game. */
+    static Board randomPlay(int size, long seed) {
+        Board board = new Board(size);
+        Random random = new Random(seed);
+        int numSquares = board.numSquares();
+        for (int k = 0; k < numSquares; k += 1) {
+            Side player = board.whoseMove();
+            board.addSpot(player, randomMove(board, random));
+            if (board.getWinner() != null) {
+                board.undo();
+                break;
+            }
+        }
+        return new Board(board);
+    }
+
+    /** Return the curated position named NAME in CURATED. */
+    static Board curated(String name) {
+        InputStream input = Positions.class.getResourceAsStream(CURATED);
+        if (input == null) {
+            throw new IllegalArgumentException("missing resource: "
+                                               + CURATED);
+        }
+        try (BufferedReader in =
+             new BufferedReader(new InputStreamReader(input,
+                                    StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().equals(name)) {
+                    StringBuilder dump = new StringBuilder();
+                    int bars = 0;
+                    while (bars < 2 && (line = in.readLine()) != null) {
+                        dump.append(line).append("\n");
+                        if (line.trim().equals("===")) {
+                            bars += 1;
+                        }
+                    }
+                    return Board.parse(dump.toString());
+                }
+            }
+        } catch (IOException excp) {
+            throw new UncheckedIOException(excp);
+        }
+        throw new IllegalArgumentException("unknown position: " + name);
+    }
+
+    /** Return a SIZE x SIZE position in which every square of the
+     *  top-left BLOCK x BLOCK corner (all of a board with at most BLOCK
+     *  squares on a side) holds as many spots as it can without jumping,
+     *  its color chosen at random using random numbers from SEED.  The
+     *  other squares are empty. */
+    static Board saturated(int size, long seed) {
+        Board board = new Board(size);
+        Random random = new Random(seed);
+        int block = Math.min(size, BLOCK);
+        for (int r = 1; r <= block; r += 1) {
+            for (int c = 1; c <= block; c += 1) {
+                board.set(r, c, board.neighbors(r, c),
+                          random.nextBoolean() ? RED : BLUE);
+            }
+        }
+        return new Board(board);
+    }
+
+    /** Return COUNT moves (square numbers) for the player to move on
+     *  BOARD, chosen at random among the legal moves using random numbers
+     *  from SEED.  If FULL, only squares that will jump are chosen
+     *  (there must be some). */
+    static int[] moves(Board board, boolean full, int count, long seed) {
+        Random random = new Random(seed);
+        int[] result = new int[count];
+        for (int k = 0; k < count; k += 1) {
+            int n;
+            do {
+                n = randomMove(board, random);
+            } while (full && board.spots(n) < board.neighbors(n));
+            result[k] = n;
+        }
+        return result;
+    }
+
+    /** Return a random square of BOARD where the player to move may
+     *  legally move, using RANDOM. */
+    private static int randomMove(Board board, Random random) {
+        Side player = board.whoseMove();
+        int n;
+        do {
+            n = random.nextInt(board.numSquares());
+        } while (!board.isLegal(player, n));
+        return n;
+    }
+
+}
@@ -0,0 +1,91 @@
+package jump61;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** JMH throughput benchmark for Board.undo alone, on the same positions
+ *  and moves as BoardBench.  An undo needs a move to undo, and a position
+ *  has only so many moves left in it (on a full board, every move wins),
+ *  so the benchmark keeps BATCH copies of the position.  Before each
+ *  invocation, untimed, one move is made on each copy; the invocation
+ *  then undoes them all, spreading the cost of JMH's per-invocation
+ *  setup over BATCH undos.
+ *  @author Ryan Shih
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UndoBench {
+
+    /** Number of squares on a side. */
+    @Param({ "4", "5", "6", "7", "8", "9", "10", "64", "256", "1024" })
+    public int size;
+
+    /** Kind of position (see Positions). */
+    @Param({ Positions.RANDOM, Positions.CASCADE })
+    public String kind;
+
+    /** Make the copies of the position and the moves to be undone. */
+    @Setup
+    public void setUp() {
+        Board board = Positions.position(kind, size, BoardBench.SEED);
+        _moves = Positions.moves(board, kind.equals(Positions.CASCADE),
+                                 BoardBench.MOVES, BoardBench.SEED);
+        _player = board.whoseMove();
+        _boards = new Board[BATCH];
+        for (int k = 0; k < BATCH; k += 1) {
+            _boards[k] = new Board(board);
+        }
+    }
+
+    /** Make the next move in the list on each copy of the position. */
+    @Setup(Level.Invocation)
+    public void play() {
+        for (Board board : _boards) {
+            board.addSpot(_player, _moves[_next]);
+            _next = (_next + 1) & (BoardBench.MOVES - 1);
+        }
+    }
+
+    /** Undo the moves made by play, returning the total number of spots
+     *  left. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int undo() {
+        int result = 0;
+        for (Board board : _boards) {
+            board.undo();
+            result += board.numPieces();
+        }
+        return result;
+    }
+
+    /** Number of copies of the position. */
+    static final int BATCH = 16;
+
+    /** The copies of the position. */
+    private Board[] _boards;
+    /** The player to move in the position. */
+    private Side _player;
+    /** The moves to make, in order. */
+    private int[] _moves;
+    /** Index of the next move in _moves. */
+    private int _next;
+
+}
@@ -0,0 +1,112 @@
+package jump61;
+
+import java.util.Random;
+
+import static jump61.Side.*;
+
+/** Timing benchmark for the Board engine on large boards.  For each board
+ *  size, reports the mean cost of a move during seeded random play, of
+ *  undoing those moves, and of a move that sets off a long cascade
+ *  through a saturated block of squares, resolved both sequentially and
+ *  by a ParallelCascade.  On boards of at least 2 * BLOCK squares on a
+ *  side, generations of the cascade grow past
+ *  ParallelCascade.MIN_PARALLEL_FRONTIER squares, so that the
+ *  ParallelCascade divides them among threads; on smaller boards, it
+ *  resolves every generation on the calling thread.  Run as
+ *      java jump61.LargeBoardBench [SIZE ...]
+ *  @author Ryan Shih
+ */
+public class LargeBoardBench {
+
+    /** Default board sizes. */
+    private static final int[] SIZES = { 64, 128, 256, 512, 1024 };
+
+    /** Number of random moves timed per size. */
+    private static final int MOVES = 20000;
+
+    /** Largest side of the saturated block used for cascade timings.  A
+     *  cascade through a block this size has generations of more than
+     *  5000 squares. */
+    private static final int BLOCK = 128;
+
+    /** Number of cascades timed per size. */
+    private static final int CASCADES = 20;
+
+    /** Seed for random play. */
+    private static final long SEED = 61;
+
+    /** Run the benchmark on the sizes in ARGS, or on the default sizes if
+     *  there are none. */
+    public static void main(String[] args) {
+        int[] sizes = SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i += 1) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.printf("%6s %12s %12s %14s %14s %10s%n",
+                          "size", "ns/move", "ns/undo", "ns/cascade",
+                          "ns/par.casc.", "squares");
+        for (int size : sizes) {
+            bench(size);
+            bench(size);
+        }
+    }
+
+    /** Time random play, undo, and cascades on a SIZE x SIZE board and
+     *  print one line of results. */
+    private static void bench(int size) {
+        Board board = new Board(size);
+        Random random = new Random(SEED);
+        int numSquares = board.numSquares();
+
+        int moves = 0;
+        long start = System.nanoTime();
+        while (moves < MOVES && board.getWinner() == null) {
+            Side player = board.whoseMove();
+            int n = random.nextInt(numSquares);
+            while (!board.isLegal(player, n)) {
+                n = random.nextInt(numSquares);
+            }
+            board.addSpot(player, n);
+            moves += 1;
+        }
+        long playTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < moves; i += 1) {
+            board.undo();
+        }
+        long undoTime = System.nanoTime() - start;
+
+        int block = Math.min(BLOCK, size / 2);
+        for (int r = 1; r <= block; r += 1) {
+            for (int c = 1; c <= block; c += 1) {
+                board.set(r, c, board.neighbors(r, c), RED);
+            }
+        }
+        board.setParallelCascade(false);
+        long cascadeTime = cascades(board);
+        board.setParallelCascade(true);
+        long parallelTime = cascades(board);
+
+        System.out.printf("%6d %12.0f %12.0f %14.0f %14.0f %10d%n",
+                          size, (double) playTime / moves,
+                          (double) undoTime / moves,
+                          (double) cascadeTime / CASCADES,
+                          (double) parallelTime / CASCADES, block * block);
+    }
+
+    /** Return the time in nanoseconds to make and undo CASCADES moves
+     *  at the upper-left corner of BOARD. */
+    private static long cascades(Board board) {
+        long start = System.nanoTime();
+        for (int i = 0; i < CASCADES; i += 1) {
+            board.addSpot(RED, 1, 1);
+            board.undo();
+        }
+        return System.nanoTime() - start;
+    }
+
+}
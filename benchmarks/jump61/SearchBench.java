@@ -0,0 +1,71 @@
+package jump61;
+
+import java.util.Random;
+
+/** Node-count and timing benchmark for AI search.  Searches a fixed set of
+ *  positions, each reached by seeded random play from an empty board, to
+ *  a fixed depth with a fresh AI, and reports the move chosen, the
+ *  number of positions visited, and the time taken.  Run as
+ *      java jump61.SearchBench [DEPTH]
+ *  @author Ryan Shih
+ */
+public class SearchBench {
+
+    /** The positions searched: board size and number of random moves
+     *  made from the empty board, in pairs. */
+    private static final int[][] POSITIONS = {
+        { 4, 6 }, { 4, 14 }, { 5, 10 }, { 5, 24 },
+        { 6, 10 }, { 6, 30 }, { 6, 50 }, { 8, 40 },
+    };
+
+    /** Default search depth. */
+    private static final int DEPTH = 7;
+
+    /** Seed for random play. */
+    private static final long SEED = 61;
+
+    /** Run the benchmark to the depth in ARGS[0], if present, or else
+     *  DEPTH. */
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : DEPTH;
+        Game game = new Game(null, (b) -> { }, null, false);
+        long totalNodes = 0, totalTime = 0;
+        System.out.printf("%6s %6s %8s %12s %10s%n",
+                          "size", "moves", "choice", "nodes", "ms");
+        for (int[] position : POSITIONS) {
+            Board board = position(position[0], position[1]);
+            Side player = board.whoseMove();
+            AI ai = new AI(game, player, SEED);
+            long start = System.nanoTime();
+            int move = ai.searchForMove(board, player, depth,
+                                        start + 3600_000_000_000L, 1,
+                                        false);
+            long time = System.nanoTime() - start;
+            totalNodes += ai.nodes();
+            totalTime += time;
+            System.out.printf("%6d %6d %8s %12d %10.1f%n",
+                              position[0], position[1],
+                              board.moveString(move), ai.nodes(),
+                              time / 1e6);
+        }
+        System.out.printf("%6s %6s %8s %12d %10.1f%n", "total", "", "",
+                          totalNodes, totalTime / 1e6);
+    }
+
+    /** Return the position reached by MOVES random moves (fewer if the
+     *  game ends) on an empty SIZE x SIZE board. */
+    static Board position(int size, int moves) {
+        Board board = new Board(size);
+        Random random = new Random(SEED + 1000 * size + moves);
+        for (int k = 0; k < moves && board.getWinner() == null; k += 1) {
+            Side player = board.whoseMove();
+            int n;
+            do {
+                n = random.nextInt(board.numSquares());
+            } while (!board.isLegal(player, n));
+            board.addSpot(player, n);
+        }
+        return new Board(board);
+    }
+
+}
@@ -1,9 +1,15 @@
 package jump61;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import static jump61.Side.*;
+import static jump61.TranspositionTable.*;
 
 /** An automated Player.
  *  @author P. N. Hilfinger
@@ -16,76 +22,800 @@ class AI extends Player {
     AI(Game game, Side color, long seed) {
         super(game, color);
         _random = new Random(seed);
+        _master = this;
+    }
+
+    /** A helper for MASTER's parallel searches, sharing its transposition
+     *  table but with its own Board and move-ordering tables. */
+    private AI(AI master) {
+        super(master.getGame(), master.getSide());
+        _random = master._random;
+        _master = master;
     }
 
     @Override
     String getMove() {
         Board board = getGame().getBoard();
-
         assert getSide() == board.whoseMove();
         int choice = searchForMove(board, board.whoseMove());
         getGame().reportMove(board.row(choice), board.col(choice));
         return String.format("%d %d", board.row(choice), board.col(choice));
     }
 
-    /** Return a move after searching the game tree to DEPTH>0 moves
-     *  from the current position. Assumes the game is not over.
-     *  Takes in Board B and SIDE. */
+    /** Return a move for SIDE from Board B: the one in the game's opening
+     *  book or tablebase for B, if there is one, and otherwise the one
+     *  found by searching the game tree by iterative deepening for as long
+     *  as the game's time limit per move allows.  Assumes the game is not
+     *  over. */
     private int searchForMove(Board b, Side side) {
         Board board = b.getBoard();
-        int bestScore = negInf;
-        int bestMove = -1;
-        int score;
-        ArrayList<Integer> vI = validIndices(board, side);
         if (board.getWinner() != null) {
-            System.out.println("Winner detected: " + board.getWinner());
+            Utils.debug(1, "winner detected: %s", board.getWinner());
+        }
+        OpeningBook book = getGame().book(board.size());
+        if (book != null) {
+            int move = book.move(board);
+            if (move >= 0 && board.isLegal(side, move)) {
+                Utils.debug(1, "book move: %s", board.moveString(move));
+                return move;
+            }
+        }
+        Tablebase tablebase = getGame().tablebase(board.size());
+        if (tablebase != null) {
+            int move = tablebase.move(board);
+            if (move >= 0) {
+                Utils.debug(1, "tablebase move: %s (%d to go)",
+                            board.moveString(move), tablebase.distance(board));
+                return move;
+            }
+        }
+        long limit = System.nanoTime() + getGame().moveTime() * 1000000L;
+        int move = searchForMove(board, side, Defaults.MAX_SEARCH_DEPTH,
+                                 limit, getGame().threads(),
+                                 getGame().lazySmp());
+        getGame().recordStats(side, _lastStats);
+        return move;
+    }
+
+    /** Ponder on a copy of the game board while my opponent is to move.
+     *  If my transposition table predicts the opponent's move, search my
+     *  reply to it; otherwise, search the opponent's position.  Either
+     *  way, the search runs on its own thread, with no time limit, and
+     *  what it learns stays in my transposition table and move-ordering
+     *  tables, for use by my next search.  Does nothing when the game is
+     *  over or my move is to come from a book or tablebase. */
+    @Override
+    void startPondering() {
+        Board board = new Board(getGame().getBoard());
+        Side side = board.whoseMove();
+        if (_ponder != null || side == getSide()
+            || board.getWinner() != null
+            || getGame().tablebase(board.size()) != null) {
+            return;
+        }
+        int predicted = predictedMove(board);
+        if (predicted >= 0) {
+            board.addSpot(side, predicted);
+            side = side.opposite();
+            if (board.getWinner() != null) {
+                return;
+            }
+        }
+        Side player = side;
+        long limit = System.nanoTime() + PONDER_LIMIT;
+        _ponder = new Thread(() ->
+            searchForMove(board, player, Defaults.MAX_SEARCH_DEPTH, limit,
+                          getGame().threads(), getGame().lazySmp()));
+        _ponder.setDaemon(true);
+        Utils.debug(1, "pondering %s", predicted < 0 ? "all replies"
+                    : "after " + board.moveString(predicted));
+        _ponder.start();
+    }
+
+    @Override
+    void stopPondering() {
+        if (_ponder == null) {
+            return;
+        }
+        _halted = true;
+        try {
+            _ponder.join();
+        } catch (InterruptedException excp) {
+            throw new Error(excp);
+        } finally {
+            _halted = false;
+            _ponder = null;
+        }
+    }
+
+    /** Return the best move in BOARD according to my transposition table,
+     *  or -1 if it has none. */
+    private int predictedMove(Board board) {
+        if (_table == null) {
+            return -1;
+        }
+        int symmetry = board.canonicalSymmetry();
+        int move = move(_table.probe(board.zobrist(symmetry)));
+        if (move < 0) {
+            return -1;
+        }
+        move = board.geometry().image(Geometry.inverse(symmetry), move);
+        return board.isLegal(board.whoseMove(), move) ? move : -1;
+    }
+
+    /** Return a move for SIDE from BOARD after searching the game tree to
+     *  depths 1, 2, ..., MAXDEPTH moves in turn, stopping early when the
+     *  time given by System.nanoTime() passes LIMIT or the outcome is
+     *  certain, and using THREADS threads: if LAZYSMP, by Lazy SMP (see
+     *  startHelpers), and otherwise by dividing up root moves (see
+     *  searchRootParallel).  Returns the best move found by the deepest
+     *  search that was completed; the search to depth 1 is always
+     *  completed.  Assumes the game is not over. */
+    int searchForMove(Board board, Side side, int maxDepth, long limit,
+                      int threads, boolean lazySmp) {
+        int tableSize = getGame().tableSize();
+        if (_table == null || _table.megabytes() != tableSize) {
+            _table = new TranspositionTable(tableSize);
+        }
+        _table.newSearch();
+        if (threads > 1
+            && (_pool == null || _pool.getParallelism() != threads)) {
+            if (_pool != null) {
+                _pool.shutdown();
+            }
+            _pool = new ForkJoinPool(threads);
+            _allHelpers.clear();
+            _helpers = ThreadLocal.withInitial(() -> {
+                AI helper = new AI(this);
+                synchronized (_allHelpers) {
+                    _allHelpers.add(helper);
+                }
+                return helper;
+            });
+        }
+        _threads = lazySmp ? 1 : threads;
+        _search += 1;
+        long start = System.nanoTime();
+        startSearch(board, limit);
+        _rootBoard = new Board(board);
+        ArrayList<Future<?>> helpers = new ArrayList<>();
+        _rootSymmetries = 0;
+        for (int t = 1; t < Geometry.SYMMETRIES; t += 1) {
+            if (board.zobrist(t) == board.zobrist() && board.symmetric(t)) {
+                _rootSymmetries |= 1 << t;
+            }
+        }
+        int count = rootMoves(board, side, moveBuffer(0));
+        if (count == 0) {
+            Utils.debug(1, "no valid moves on this board:%n%s", board);
+        }
+        int bestMove = count == 0 ? -1 : _moves[0][0];
+        if (count <= 1) {
+            collectStats(0, start);
+            return bestMove;
+        }
+        if (lazySmp && threads > 1) {
+            helpers = startHelpers(side, threads - 1, maxDepth);
+        }
+        int score = 0, completed = 0;
+        for (int depth = 1; depth <= maxDepth; depth += 1) {
+            _mustFinish = depth == 1;
+            int move = searchAspirated(board, side, depth, bestMove, score);
+            if (_stopped) {
+                break;
+            }
+            bestMove = move;
+            score = _rootScore;
+            completed = depth;
+            Utils.debug(1, "depth %d: %s (%d), %d nodes", depth,
+                        board.moveString(move), _rootScore, _nodes);
+            if (Utils.getMessageLevel() >= 2) {
+                collectStats(depth, start);
+                Utils.debug(2, "  %s", _lastStats);
+            }
+            if (Math.abs(_rootScore) > WIN_SCORE) {
+                break;
+            }
+        }
+        _stopped = true;
+        for (Future<?> helper : helpers) {
+            try {
+                helper.get();
+            } catch (InterruptedException | ExecutionException excp) {
+                throw new Error(excp);
+            }
+        }
+        collectStats(completed, start);
+        Utils.debug(1, "search: %s", _lastStats);
+        return bestMove;
+    }
+
+    /** Set _lastStats to the totals of the counts kept by this AI and its
+     *  helpers for the current search, which completed DEPTH iterations
+     *  and started at time START. */
+    private void collectStats(int depth, long start) {
+        SearchStats total = new SearchStats();
+        total.add(_stats);
+        total.addNodes(_nodes);
+        synchronized (_allHelpers) {
+            for (AI helper : _allHelpers) {
+                if (helper._search == _search) {
+                    total.add(helper._stats);
+                    total.addNodes(helper._nodes);
+                }
+            }
+        }
+        total.finish(depth, System.nanoTime() - start);
+        _lastStats = total;
+    }
+
+    /** Start N helpers searching the moves of SIDE in _rootBoard on _pool
+     *  for Lazy SMP, and return their tasks.  Each helper runs the same
+     *  iterative deepening search as this AI, on its own copy of the
+     *  board, up to depth MAXDEPTH or until this AI stops.  Half the
+     *  helpers start one depth deeper than the others, so that the
+     *  threads are not all working on the same depths in step.  The
+     *  helpers' results reach this AI only through the shared
+     *  transposition table, which they fill with entries that this AI
+     *  would otherwise have to compute, and with best moves that improve
+     *  its move ordering. */
+    private ArrayList<Future<?>> startHelpers(Side side, int n,
+                                              int maxDepth) {
+        ArrayList<Future<?>> result = new ArrayList<>();
+        for (int k = 0; k < n; k += 1) {
+            int first = 1 + k % 2;
+            result.add(_pool.submit(() -> {
+                _helpers.get().helpSearch(side, first, maxDepth);
+            }));
+        }
+        return result;
+    }
+
+    /** As a Lazy SMP helper of _master, search SIDE's moves from
+     *  _master's root position to depths FIRST, FIRST + 1, ... MAXDEPTH,
+     *  until _master stops. */
+    private void helpSearch(Side side, int first, int maxDepth) {
+        AI master = _master;
+        _search = master._search;
+        _table = master._table;
+        _board = new Board(master._rootBoard);
+        _rootSymmetries = master._rootSymmetries;
+        startSearch(_board, master._deadline);
+        _mustFinish = false;
+        int move = -1;
+        for (int depth = first; depth <= maxDepth; depth += 1) {
+            move = searchRoot(_board, side, depth, move, negInf, posInf);
+            if (_stopped) {
+                break;
+            }
+        }
+    }
+
+    /** Return the best move for SIDE from BOARD found by searching to
+     *  DEPTH moves, trying FIRSTMOVE (if not -1) first, and set _rootScore
+     *  to its value, as for searchRoot.  Unless DEPTH is 1, the value is
+     *  expected to be close to GUESS, the value found by the previous
+     *  iteration, so the search first uses an aspiration window: a narrow
+     *  window around GUESS.  Should the value fall outside it, the search
+     *  is repeated with a wider window on that side. */
+    private int searchAspirated(Board board, Side side, int depth,
+                                int firstMove, int guess) {
+        if (depth == 1 || _threads > 1 || Math.abs(guess) > WIN_SCORE) {
+            return searchRoot(board, side, depth, firstMove, negInf, posInf);
         }
-        if (vI.size() == 0) {
-            System.out.println("No valid moves on this board:\n" + board);
+        int lower = ASPIRATION_WINDOW, upper = ASPIRATION_WINDOW;
+        while (true) {
+            int alpha = Math.max(negInf, guess - lower),
+                beta = Math.min(posInf, guess + upper);
+            int move = searchRoot(board, side, depth, firstMove, alpha, beta);
+            if (_stopped) {
+                return move;
+            } else if (_rootScore <= alpha && alpha > negInf) {
+                lower *= ASPIRATION_GROWTH;
+            } else if (_rootScore >= beta && beta < posInf) {
+                upper *= ASPIRATION_GROWTH;
+                firstMove = move;
+            } else {
+                return move;
+            }
         }
-        for (int i: vI) {
+    }
+
+    /** Return the best move for SIDE from BOARD found by searching to
+     *  DEPTH moves, trying FIRSTMOVE (if not -1) first, and set _rootScore
+     *  to its value: the first move with the highest value.  If that
+     *  value is not greater than ALPHA or not less than BETA, it is only
+     *  an upper or lower bound (respectively) on the true value.  After
+     *  the first move, moves are first searched with a null window to
+     *  check whether they are better than the best so far, and searched
+     *  again fully only if they are.  The result is meaningless if
+     *  _stopped is set on return. */
+    private int searchRoot(Board board, Side side, int depth, int firstMove,
+                           int alpha, int beta) {
+        int bestScore = negInf;
+        int bestMove = -1;
+        _rootDepth = depth;
+        int[] moves = moveBuffer(0);
+        int count = rootMoves(board, side, moves);
+        orderMoves(board, side, moves, count, firstMove, 0);
+        if (_threads > 1) {
+            return searchRootParallel(board, side, depth, moves, count);
+        }
+        for (int k = 0; k < count; k += 1) {
+            int i = moves[k];
             board.addSpot(side, i);
-            score = minMax(board, 7, -1, side.opposite(), negInf, posInf);
+            int score;
+            if (k == 0) {
+                score = minMax(board, depth - 1, -1, side.opposite(),
+                               alpha, beta);
+            } else {
+                score = minMax(board, depth - 1, -1, side.opposite(),
+                               alpha, alpha + 1);
+                if (score > alpha && score < beta) {
+                    score = minMax(board, depth - 1, -1, side.opposite(),
+                                   alpha, beta);
+                }
+            }
             board.undo();
+            if (_stopped) {
+                break;
+            }
             if (score > bestScore) {
                 bestScore = score;
                 bestMove = i;
+                alpha = Math.max(alpha, score);
+                if (alpha >= beta) {
+                    break;
+                }
             }
         }
+        _rootScore = bestScore;
         return bestMove;
     }
 
-    /** Returns an ArrayList of Integers the same size as the board WORK.
-     *  It will fill in all valid positions PLAYER can move with its
-     *  respective index. */
-    private ArrayList<Integer> validIndices(Board work, Side player) {
-        ArrayList<Integer> vInd = new ArrayList<Integer>();
-        for (int index = 0; index < work.numSquares(); index += 1) {
-            if (work.isLegal(player, index)) {
-                vInd.add(index);
+    /** Same as searchRoot, but searching MOVES[0 .. COUNT-1], the moves
+     *  of SIDE on BOARD in the order to be tried, on _pool.  The first move is
+     *  searched by this thread to get a bound on the value of the rest,
+     *  which are then handed to the pool.  The threads share the best
+     *  score so far as a lower bound.  The result is the same as that of
+     *  searchRoot on one thread: the first of the moves with the highest
+     *  value. */
+    private int searchRootParallel(Board board, Side side, int depth,
+                                   int[] moves, int count) {
+        board.addSpot(side, moves[0]);
+        int score = minMax(board, depth - 1, -1, side.opposite(),
+                           negInf, posInf);
+        board.undo();
+        if (_stopped) {
+            return -1;
+        }
+        _rootBestScore = score;
+        _rootBestIndex = 0;
+        _iteration += 1;
+        ArrayList<Callable<Void>> tasks = new ArrayList<>();
+        for (int k = 1; k < count; k += 1) {
+            int index = k, move = moves[k];
+            tasks.add(() -> {
+                _helpers.get().searchRootMove(side, index, move);
+                return null;
+            });
+        }
+        _pool.invokeAll(tasks);
+        _rootScore = _rootBestScore;
+        return moves[_rootBestIndex];
+    }
+
+    /** As a helper of _master, search SIDE's move MOVE from _master's
+     *  root position, where MOVE is number INDEX in the order in which
+     *  _master tries moves, and report its value if it might be the best
+     *  move. */
+    private void searchRootMove(Side side, int index, int move) {
+        AI master = _master;
+        if (_search != master._search) {
+            _search = master._search;
+            _table = master._table;
+            startSearch(master._rootBoard, master._deadline);
+        }
+        if (_iteration != master._iteration) {
+            _iteration = master._iteration;
+            _board = new Board(master._rootBoard);
+            _rootDepth = master._rootDepth;
+            _mustFinish = master._mustFinish;
+        }
+        if (master._stopped) {
+            return;
+        }
+        int alpha = master.rootThreshold(index);
+        _board.addSpot(side, move);
+        int score = minMax(_board, _rootDepth - 1, -1, side.opposite(),
+                           alpha, posInf);
+        _board.undo();
+        if (_stopped) {
+            master._stopped = true;
+        } else if (score > alpha) {
+            master.reportRootScore(index, score);
+        }
+    }
+
+    /** Return the score that root move number INDEX must exceed to be
+     *  the best so far: ties go to the earlier move. */
+    private synchronized int rootThreshold(int index) {
+        return index < _rootBestIndex ? _rootBestScore - 1 : _rootBestScore;
+    }
+
+    /** Record that root move number INDEX has value SCORE, if that makes
+     *  it the best so far. */
+    private synchronized void reportRootScore(int index, int score) {
+        if (score > _rootBestScore
+            || (score == _rootBestScore && index < _rootBestIndex)) {
+            _rootBestScore = score;
+            _rootBestIndex = index;
+        }
+    }
+
+    /** Prepare to search BOARD, stopping at time LIMIT. */
+    private void startSearch(Board board, long limit) {
+        _deadline = limit;
+        _stopped = false;
+        _nodes = 0;
+        _stats.clear();
+        startOrdering(board);
+    }
+
+    /** Store the moves of SIDE on BOARD, the root position, in MOVES,
+     *  leaving out all but one of each set of moves that are equivalent
+     *  under the symmetries of BOARD in _rootSymmetries, and return how
+     *  many there are.  For example, on an empty board, only the squares
+     *  in one eighth of the board remain. */
+    private int rootMoves(Board board, Side side, int[] moves) {
+        int count = board.legalMoves(side, moves);
+        if (_rootSymmetries == 0) {
+            return count;
+        }
+        Geometry geometry = board.geometry();
+        int kept = 0;
+        for (int k = 0; k < count; k += 1) {
+            int n = moves[k];
+            boolean first = true;
+            for (int t = 1; t < Geometry.SYMMETRIES && first; t += 1) {
+                first = (_rootSymmetries & (1 << t)) == 0
+                    || geometry.image(t, n) >= n;
+            }
+            if (first) {
+                moves[kept] = n;
+                kept += 1;
+            }
+        }
+        return kept;
+    }
+
+    /** Return the number of positions visited by the last search (by
+     *  this thread). */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the counts of work done by the last search, by all
+     *  threads. */
+    SearchStats stats() {
+        return _lastStats;
+    }
+
+    /** Return the score, for the side to move, of the move chosen by the
+     *  deepest iteration of the last search. */
+    int rootScore() {
+        return _rootScore;
+    }
+
+    /** Forget what earlier searches learned, in my transposition table
+     *  and move-ordering tables, so that my next search goes as it would
+     *  for a new AI.  Used to time searches reproducibly. */
+    void forget() {
+        if (_table != null) {
+            _table.clear();
+        }
+        _history = null;
+        synchronized (_allHelpers) {
+            for (AI helper : _allHelpers) {
+                helper._history = null;
+            }
+        }
+    }
+
+    /** Stop pondering and shut down my thread pool, dropping my helpers
+     *  and transposition table, so that nothing keeps them alive once
+     *  the Game discards me.  A later search starts them afresh. */
+    @Override
+    void close() {
+        stopPondering();
+        if (_pool != null) {
+            _pool.shutdown();
+            _pool = null;
+        }
+        _helpers = null;
+        synchronized (_allHelpers) {
+            _allHelpers.clear();
+        }
+        _table = null;
+    }
+
+    /** Return true iff the current search should stop now because its
+     *  time is up or (for helpers) because _master has stopped, checking
+     *  only occasionally. */
+    private boolean timeUp() {
+        _nodes += 1;
+        if (!_mustFinish && (_nodes & TIME_CHECK_INTERVAL) == 0
+            && (System.nanoTime() - _deadline > 0 || _master._stopped
+                || _master._halted)) {
+            _stopped = true;
+        }
+        return _stopped;
+    }
+
+    /** Prepare the move buffers and the killer and history tables for a
+     *  search of BOARD, keeping what earlier searches of the same board
+     *  size learned, with its history weights halved. */
+    private void startOrdering(Board board) {
+        int numSquares = board.numSquares();
+        if (_history == null || _history[RED.ordinal()].length != numSquares) {
+            _history = new int[Side.values().length][numSquares];
+            Arrays.fill(_moves, null);
+            _orderKeys = new int[numSquares];
+        } else {
+            for (int[] weights : _history) {
+                for (int i = 0; i < numSquares; i += 1) {
+                    weights[i] >>= 1;
+                }
+            }
+        }
+        for (int[] killers : _killers) {
+            Arrays.fill(killers, -1);
+        }
+    }
+
+    /** Return the space for the moves searched at PLY moves from the
+     *  root, creating it on first use. */
+    private int[] moveBuffer(int ply) {
+        if (_moves[ply] == null) {
+            _moves[ply] = new int[_orderKeys.length];
+        }
+        return _moves[ply];
+    }
+
+    /** Reorder MOVES[0 .. COUNT-1], the legal moves of SIDE on B at PLY
+     *  moves from the root, so that the most promising come first:
+     *  HASHMOVE (if not -1),
+     *  then the killer moves for PLY, then the rest by decreasing history
+     *  weight and, among equals, by how much damage they do at once (set
+     *  off a jump, capturing the opponent's neighbors). */
+    private void orderMoves(Board b, Side side, int[] moves, int count,
+                            int hashMove, int ply) {
+        if (!_master._ordering) {
+            return;
+        }
+        int[] keys = _orderKeys;
+        int[] killers = _killers[ply];
+        int[] history = _history[side.ordinal()];
+        for (int k = 0; k < count; k += 1) {
+            int n = moves[k];
+            int key;
+            if (n == hashMove) {
+                key = HASH_MOVE_KEY;
+            } else if (n == killers[0]) {
+                key = KILLER_KEY + 1;
+            } else if (n == killers[1]) {
+                key = KILLER_KEY;
+            } else {
+                key = history[n] * TACTICS_RANGE + tactics(b, side, n);
+            }
+            int j;
+            for (j = k; j > 0 && keys[j - 1] < key; j -= 1) {
+                keys[j] = keys[j - 1];
+                moves[j] = moves[j - 1];
+            }
+            keys[j] = key;
+            moves[j] = n;
+        }
+    }
+
+    /** Order moves as described by orderMoves iff ON; otherwise, search
+     *  them in the order of Board.legalMoves.  Ordering is on by default;
+     *  turning it off serves only to measure what it saves. */
+    void setMoveOrdering(boolean on) {
+        _ordering = on;
+    }
+
+    /** Return a cheap estimate (0 <= result < TACTICS_RANGE) of the
+     *  immediate effect of SIDE's move at square N of B: 0 if it does not
+     *  set off a jump, and otherwise 1 + the number of opposing neighbors
+     *  captured by the jump. */
+    private int tactics(Board b, Side side, int n) {
+        int cap = b.neighbors(n);
+        if (b.spots(n) < cap) {
+            return 0;
+        }
+        int count = b.geometry().neighbors(n, _nbrs);
+        int result = 1;
+        Side opponent = side.opposite();
+        for (int k = 0; k < count; k += 1) {
+            if (b.side(_nbrs[k]) == opponent) {
+                result += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Record that MOVE by SIDE caused a cutoff at PLY moves from the
+     *  root in a search to DEPTH: make it the first killer move for PLY
+     *  and add to its history weight, more for deeper searches. */
+    private void recordCutoff(Side side, int move, int ply, int depth) {
+        int[] killers = _killers[ply];
+        if (killers[0] != move) {
+            killers[1] = killers[0];
+            killers[0] = move;
+        }
+        int[] history = _history[side.ordinal()];
+        history[move] += depth * depth;
+        if (history[move] >= HISTORY_LIMIT) {
+            for (int i = 0; i < history.length; i += 1) {
+                history[i] >>= 1;
             }
         }
-        return vInd;
     }
 
     /** Find a move from Board B by SIDE and return its value. The move
      *  should have maximal value or have value > BETA if SENSE==1,
      *  and minimal value or value < ALPHA if SENSE==-1. Searches up to
-     *  DEPTH levels.  Searching at level 0 simply returns a static estimate
-     *  of the board value and does not set _foundMove. If the game is over
-     *  on BOARD, does not set _foundMove. */
+     *  DEPTH levels.  This is principal variation search: only the first
+     *  move is searched with the full window; the others are searched
+     *  with a null window, just to show that they are no better than the
+     *  best so far, and are searched again with the full window when they
+     *  prove to be better.  Searching at level 0 simply returns a static
+     *  estimate of the board value and does not set _foundMove. If the
+     *  game is over on BOARD, does not set _foundMove. */
     private int minMax(Board b, int depth, int sense, Side side,
                        int alpha, int beta) {
-        if (depth == 0 || b.getWinner() != null) {
-            return staticEval(b, sense, depth);
+        if (timeUp()) {
+            return 0;
+        }
+        if (b.getWinner() != null) {
+            return staticEval(b, sense == 1 ? side : side.opposite(), depth);
+        }
+        if (depth == 0) {
+            _quiescenceNodes = 0;
+            int score = quiesce(b, 1, sense, side, alpha, beta);
+            _stats.quiescenceSearch(_quiescenceNodes);
+            return score;
+        }
+        int symmetry = b.canonicalSymmetry();
+        long key = b.zobrist(symmetry);
+        long entry = _table.probe(key);
+        _stats.probe(entry != 0);
+        int hashMove = -1;
+        if (entry != 0) {
+            hashMove = move(entry);
+            if (hashMove >= 0) {
+                hashMove = b.geometry().image(Geometry.inverse(symmetry),
+                                              hashMove);
+            }
+            if (depth(entry) >= depth) {
+                int score = sense * score(entry);
+                int bound = relativeBound(bound(entry), sense);
+                if (bound == EXACT
+                    || (bound == LOWER && score >= beta)
+                    || (bound == UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
         }
+        int alpha0 = alpha, beta0 = beta;
         int bestScore = sense * negInf;
-        ArrayList<Integer> vI = validIndices(b, side);
-        for (int i: vI) {
+        int bestMove = -1;
+        int ply = _rootDepth - depth;
+        int[] moves = moveBuffer(ply);
+        int count = b.legalMoves(side, moves);
+        orderMoves(b, side, moves, count, hashMove, ply);
+        for (int k = 0; k < count; k += 1) {
+            int i = moves[k];
             b.addSpot(side, i);
-            int score = minMax(b, depth - 1, sense * -1,
-                    side.opposite(), alpha, beta);
+            int score;
+            if (k == 0) {
+                score = minMax(b, depth - 1, -sense, side.opposite(),
+                               alpha, beta);
+            } else if (sense == 1) {
+                score = minMax(b, depth - 1, -sense, side.opposite(),
+                               alpha, alpha + 1);
+                if (score > alpha && score < beta) {
+                    score = minMax(b, depth - 1, -sense, side.opposite(),
+                                   alpha, beta);
+                }
+            } else {
+                score = minMax(b, depth - 1, -sense, side.opposite(),
+                               beta - 1, beta);
+                if (score < beta && score > alpha) {
+                    score = minMax(b, depth - 1, -sense, side.opposite(),
+                                   alpha, beta);
+                }
+            }
+            b.undo();
+            if (_stopped) {
+                return 0;
+            }
+            if (sense * (score - bestScore) > 0) {
+                bestScore = score;
+                bestMove = i;
+                if (sense == 1) {
+                    alpha = Math.max(alpha, bestScore);
+                } else {
+                    beta = Math.min(beta, bestScore);
+                }
+                if (alpha >= beta) {
+                    recordCutoff(side, i, ply, depth);
+                    _stats.cutoff(k == 0);
+                    break;
+                }
+            }
+        }
+        int bound =
+            bestScore <= alpha0 ? UPPER : bestScore >= beta0 ? LOWER : EXACT;
+        if (bestMove >= 0) {
+            bestMove = b.geometry().image(symmetry, bestMove);
+        }
+        _table.store(key, sense * bestScore, depth,
+                     relativeBound(bound, sense), bestMove);
+        return bestScore;
+    }
+
+    /** Return the value of Board B, searching only moves by SIDE and
+     *  the players after it that set off jumps capturing opposing
+     *  squares, until no such moves remain or DEPTH, the length of the
+     *  line so far plus 1, reaches MAX_QUIESCENCE_DEPTH.  SENSE, ALPHA,
+     *  and BETA are as for minMax.  Since it is rare that a player's best
+     *  move is forced to be a jump, the player to move may instead "stand
+     *  pat" and take the static value of B.  Stops extending positions
+     *  once the whole quiescence search started from the depth-0 node of
+     *  minMax has visited MAX_QUIESCENCE_NODES positions, so that it
+     *  visits no more than that. */
+    private int quiesce(Board b, int depth, int sense, Side side,
+                        int alpha, int beta) {
+        int bestScore = staticEval(b, sense == 1 ? side : side.opposite(),
+                                   0);
+        _quiescenceNodes += 1;
+        _stats.quiescenceNode(depth - 1);
+        if (timeUp() || b.getWinner() != null
+            || depth == MAX_QUIESCENCE_DEPTH
+            || _quiescenceNodes >= MAX_QUIESCENCE_NODES) {
+            return bestScore;
+        }
+        if (sense == 1) {
+            alpha = Math.max(alpha, bestScore);
+        } else {
+            beta = Math.min(beta, bestScore);
+        }
+        if (alpha >= beta) {
+            return bestScore;
+        }
+        int ply = _rootDepth + depth;
+        int[] moves = moveBuffer(ply);
+        int count = 0;
+        int legal = b.legalMoves(side, moves);
+        for (int k = 0; k < legal; k += 1) {
+            int n = moves[k];
+            if (tactics(b, side, n) > 1) {
+                moves[count] = n;
+                count += 1;
+            }
+        }
+        orderMoves(b, side, moves, count, -1, ply);
+        for (int k = 0;
+             k < count && _quiescenceNodes < MAX_QUIESCENCE_NODES; k += 1) {
+            b.addSpot(side, moves[k]);
+            int score = quiesce(b, depth + 1, -sense, side.opposite(),
+                                alpha, beta);
             b.undo();
+            if (_stopped) {
+                return 0;
+            }
             if (sense * (score - bestScore) > 0) {
                 bestScore = score;
                 if (sense == 1) {
@@ -94,24 +824,165 @@ class AI extends Player {
                     beta = Math.min(beta, bestScore);
                 }
                 if (alpha >= beta) {
-                    return bestScore;
+                    break;
                 }
             }
         }
         return bestScore;
     }
 
-    /** Return a heuristic estimate of the value of board position B.
-     *  Takes in SENSE to differentiate between a maxizing and minimizing
-     *  player along with DEPTH to prioritize boards that win quicker. */
-    private int staticEval(Board b, int sense, int depth) {
-        Side result = b.getWinner();
-        if (result != null) {
-            return 100 * sense * depth;
+    /** Convert BOUND, the type of a score from the point of view of the
+     *  maximizing player, to the type of the same score negated by SENSE,
+     *  or vice versa.  Transposition table scores are from the point of
+     *  view of the player to move, which is the minimizing player when
+     *  SENSE is -1. */
+    private static int relativeBound(int bound, int sense) {
+        if (sense == 1 || bound == EXACT) {
+            return bound;
         }
-        return 1;
+        return bound == LOWER ? UPPER : LOWER;
     }
 
+    /** Return a heuristic estimate of the value of board position B to
+     *  the maximizing player, MAXIMIZER.  Won and lost positions are worth
+     *  more than WIN_SCORE in absolute value, more so with more remaining
+     *  DEPTH, so that quicker wins and slower losses are preferred.
+     *  Otherwise, the estimate combines features that B keeps up to date
+     *  as it changes, so it takes constant time. */
+    private int staticEval(Board b, Side maximizer, int depth) {
+        Side winner = b.getWinner();
+        if (winner != null) {
+            int score = WIN_SCORE + 1 + depth;
+            return winner == maximizer ? score : -score;
+        }
+        Side minimizer = maximizer.opposite();
+        long score =
+            SPOT_WEIGHT * (b.spotsOf(maximizer) - b.spotsOf(minimizer))
+            + CRITICAL_WEIGHT * (b.criticalSquares(maximizer)
+                                 - b.criticalSquares(minimizer))
+            + EDGE_WEIGHT * (b.edgeWeight(maximizer)
+                             - b.edgeWeight(minimizer))
+            - THREAT_WEIGHT * (b.threatenedSquares(maximizer)
+                               - b.threatenedSquares(minimizer));
+        return (int) Math.max(-WIN_SCORE, Math.min(WIN_SCORE, score));
+    }
+
+    /** Time (as given by System.nanoTime()) at which the current search
+     *  should stop. */
+    private long _deadline;
+    /** True iff the current search has run out of time. */
+    private volatile boolean _stopped;
+    /** True iff a pondering search has been told to stop. */
+    private volatile boolean _halted;
+    /** The thread running a pondering search, or null if there is
+     *  none. */
+    private Thread _ponder;
+    /** True iff the current search must finish regardless of time. */
+    private boolean _mustFinish;
+    /** Number of positions visited by the current search. */
+    private long _nodes;
+    /** Number of positions visited by the current quiescence search. */
+    private int _quiescenceNodes;
+    /** Counts of work done by this thread in the current search. */
+    private final SearchStats _stats = new SearchStats();
+    /** Counts of work done by the last search, by all threads. */
+    private SearchStats _lastStats = new SearchStats();
+    /** The value of the best move found by the last call to searchRoot. */
+    private int _rootScore;
+
+    /** Half-width of the initial aspiration window, and the factor by
+     *  which it grows on each failure. */
+    private static final int ASPIRATION_WINDOW = 40, ASPIRATION_GROWTH = 4;
+
+    /** Quiescence search extends a line by at most MAX_QUIESCENCE_DEPTH - 1
+     *  moves, and visits at most MAX_QUIESCENCE_NODES positions below
+     *  any one depth-0 node. */
+    static final int
+        MAX_QUIESCENCE_DEPTH = 3, MAX_QUIESCENCE_NODES = 32;
+
+    /** Number of plies from the root for which searches need killer
+     *  moves and move buffers. */
+    private static final int MAX_PLY =
+        Defaults.MAX_SEARCH_DEPTH + MAX_QUIESCENCE_DEPTH;
+
+    /** Longest time a pondering search may run, in nanoseconds. */
+    private static final long PONDER_LIMIT = 600_000_000_000L;
+
+    /** The clock is checked once every TIME_CHECK_INTERVAL + 1 nodes. */
+    private static final int TIME_CHECK_INTERVAL = 1023;
+
+    /** Scores larger than this in magnitude denote a won or lost game. */
+    private static final int WIN_SCORE = 100000;
+
+    /** Weights of the features used by staticEval: spots, critical
+     *  squares, corner and edge squares, and squares threatened by
+     *  opposing critical squares. */
+    private static final int
+        SPOT_WEIGHT = 2, CRITICAL_WEIGHT = 3, EDGE_WEIGHT = 2,
+        THREAT_WEIGHT = 4;
+
+    /** The set of symmetries (other than the identity) of the root
+     *  position of the current search: symmetry T is in the set iff bit T
+     *  is 1. */
+    private int _rootSymmetries;
+
+    /** The depth of the current iteration of iterative deepening. */
+    private int _rootDepth;
+
+    /** For each ply, the two most recent moves there that caused cutoffs,
+     *  most recent first, or -1. */
+    private final int[][] _killers = new int[MAX_PLY][2];
+    /** For each side and square, a weight reflecting how often and how
+     *  deep moves there have caused cutoffs. */
+    private int[][] _history;
+    /** True iff moves are ordered (see setMoveOrdering). */
+    private boolean _ordering = true;
+    /** For each ply, space for the moves searched there, or null if not
+     *  yet needed (see moveBuffer). */
+    private final int[][] _moves = new int[MAX_PLY][];
+    /** Scratch space for orderMoves. */
+    private int[] _orderKeys;
+    /** Scratch space for the neighbors of a square. */
+    private final int[] _nbrs = new int[4];
+
+    /** Ordering keys for hash and killer moves, above any history key. */
+    private static final int
+        HASH_MOVE_KEY = Integer.MAX_VALUE, KILLER_KEY = 1 << 30;
+    /** Bound on the values returned by tactics. */
+    private static final int TACTICS_RANGE = 8;
+    /** History weights are halved on reaching this bound, which keeps
+     *  history keys below KILLER_KEY. */
+    private static final int HISTORY_LIMIT = KILLER_KEY / TACTICS_RANGE / 2;
+
+    /** The AI whose searches I help, or THIS if I am not a helper. */
+    private final AI _master;
+    /** Number of threads used by the current search. */
+    private int _threads;
+    /** Threads used by searches with more than one thread. */
+    private ForkJoinPool _pool;
+    /** The helper for each thread of _pool. */
+    private ThreadLocal<AI> _helpers;
+    /** All helpers created for _pool. */
+    private final ArrayList<AI> _allHelpers = new ArrayList<>();
+    /** Counts the searches made by _master (used by helpers to detect a
+     *  new search). */
+    private int _search;
+    /** Counts the iterations of parallel root search by _master (used by
+     *  helpers to detect a new iteration). */
+    private int _iteration;
+    /** A copy of the position being searched by a parallel search,
+     *  taken before any helper starts.  Helpers copy it rather than the
+     *  board my own search is changing, and nothing changes it. */
+    private Board _rootBoard;
+    /** In a helper, my copy of _master's _rootBoard. */
+    private Board _board;
+    /** The best value found so far by a parallel root search, and the
+     *  index of its move in the order in which moves are tried. */
+    private int _rootBestScore, _rootBestIndex;
+
+    /** Search results, shared by all my searches. */
+    private TranspositionTable _table;
+
     /** A random-number generator used for move selection. */
     private Random _random;
 
@@ -4,7 +4,10 @@ import static jump61.Side.*;
 
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -160,6 +163,334 @@ public class AITest {
         assertArrayEquals(vMBInd.toArray(), validIndices(B, BLUE).toArray());
     }
 
+    @Test
+    public void testTranspositionTable() {
+        TranspositionTable table = new TranspositionTable(1);
+        assertEquals(1 << 16, table.capacity());
+        assertEquals(0, table.probe(12345L));
+        table.store(12345L, -700, 5, TranspositionTable.LOWER, 17);
+        long entry = table.probe(12345L);
+        assertEquals(-700, TranspositionTable.score(entry));
+        assertEquals(5, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+        assertEquals(17, TranspositionTable.move(entry));
+        table.store(12345L, 3, 2, TranspositionTable.UPPER, -1);
+        assertEquals(5, TranspositionTable.depth(table.probe(12345L)));
+        table.newSearch();
+        table.store(12345L, 3, 2, TranspositionTable.UPPER, -1);
+        entry = table.probe(12345L);
+        assertEquals(2, TranspositionTable.depth(entry));
+        assertEquals(-1, TranspositionTable.move(entry));
+        long other = 12345L + (1L << 40);
+        table.store(other, 9, 1, TranspositionTable.EXACT, 4);
+        assertEquals(9, TranspositionTable.score(table.probe(other)));
+        assertEquals(3, TranspositionTable.score(table.probe(12345L)));
+        assertEquals(0, table.probe(other + 1));
+    }
+
+    @Test
+    public void testParallelRootSearch() {
+        Game game = new Game(null, (b) -> { }, null, false);
+        Random random = new Random(61);
+        for (int trial = 0; trial < 5; trial += 1) {
+            Board B = new Board(5);
+            for (int k = 0; k < 12 && B.getWinner() == null; k += 1) {
+                Side player = B.whoseMove();
+                int n = random.nextInt(B.numSquares());
+                if (B.isLegal(player, n)) {
+                    B.addSpot(player, n);
+                }
+            }
+            if (B.getWinner() != null) {
+                continue;
+            }
+            long limit = System.nanoTime() + 3600_000_000_000L;
+            Side player = B.whoseMove();
+            AI single = new AI(game, player, 0);
+            AI multi = new AI(game, player, 0);
+            int sequential =
+                single.searchForMove(B, player, 4, limit, 1, false);
+            int parallel =
+                multi.searchForMove(B, player, 4, limit, 4, false);
+            assertEquals(sequential, parallel);
+        }
+    }
+
+    @Test
+    public void testLazySmp() {
+        Game game = new Game(null, (b) -> { }, null, false);
+        Board B = new Board(6);
+        B.addSpot(RED, 0);
+        B.addSpot(BLUE, 7);
+        AI ai = new AI(game, RED, 0);
+        long start = System.nanoTime();
+        int move = ai.searchForMove(B, RED, 64, start + 200_000_000L, 4, true);
+        assertTrue(System.nanoTime() - start < 2_000_000_000L);
+        assertTrue(B.isLegal(RED, move));
+        assertEquals(2, B.numPieces() - B.numSquares());
+    }
+
+    @Test
+    public void testQuiescence() {
+        Game game = new Game(null, (b) -> { }, null, false);
+        Board B = Board.parse("===\n"
+                              + "    1- 1- 2r 2r\n"
+                              + "    3b 2r 2b 2r\n"
+                              + "    1- 1- 1- 1-\n"
+                              + "    2b 3r 2b 2b\n"
+                              + "===");
+        Side player = B.whoseMove();
+        long limit = System.nanoTime() + 3600_000_000_000L;
+        AI ai = new AI(game, player, 0);
+        int move = ai.searchForMove(B, player, 1, limit, 1, false);
+        assertNotEquals("missed capture past the horizon",
+                        B.sqNum(4, 2), move);
+        assertEquals(B.sqNum(1, 1), move);
+        SearchStats stats = ai.stats();
+        assertTrue(stats.quiescenceSearches() > 0);
+        assertTrue(stats.quiescenceExtension() > 0);
+
+        ai.searchForMove(B, player, 4, limit, 1, false);
+        stats = ai.stats();
+        assertTrue("quiescence too deep", stats.quiescenceExtension()
+                   <= AI.MAX_QUIESCENCE_DEPTH - 1);
+        assertTrue("quiescence too large", stats.largestQuiescence()
+                   <= AI.MAX_QUIESCENCE_NODES);
+        assertTrue(stats.quiescenceNodes()
+                   <= AI.MAX_QUIESCENCE_NODES * stats.quiescenceSearches());
+    }
+
+    @Test
+    public void testMoveOrdering() {
+        Game game = new Game(null, (b) -> { }, null, false);
+        for (long seed : new long[] { 0, 3 }) {
+            Random random = new Random(seed);
+            Board B = new Board(5);
+            for (int k = 0; k < 10; k += 1) {
+                int n;
+                do {
+                    n = random.nextInt(B.numSquares());
+                } while (!B.isLegal(B.whoseMove(), n));
+                B.addSpot(B.whoseMove(), n);
+            }
+            assertNull(B.getWinner());
+            Side player = B.whoseMove();
+            long limit = System.nanoTime() + 3600_000_000_000L;
+            AI ordered = new AI(game, player, 0),
+                unordered = new AI(game, player, 0);
+            unordered.setMoveOrdering(false);
+            int move = ordered.searchForMove(B, player, 6, limit, 1, false);
+            assertEquals("different move", move,
+                         unordered.searchForMove(B, player, 6, limit, 1,
+                                                 false));
+            assertEquals("different score", unordered.rootScore(),
+                         ordered.rootScore());
+            assertTrue("ordering did not save nodes",
+                       ordered.nodes() < unordered.nodes());
+        }
+    }
+
+    @Test
+    public void testTimeLimit() {
+        Game game = new Game(null, (b) -> { }, null, false);
+        Board B = new Board(6);
+        B.addSpot(RED, 0);
+        B.addSpot(BLUE, 7);
+        for (int threads : new int[] { 1, 3 }) {
+            AI ai = new AI(game, RED, 0);
+            long start = System.nanoTime();
+            int move = ai.searchForMove(B, RED, Defaults.MAX_SEARCH_DEPTH,
+                                        start + 50_000_000L, threads, true);
+            long overrun = System.nanoTime() - start - 50_000_000L;
+            assertTrue("overran time limit by " + overrun + " ns",
+                       overrun < 500_000_000L);
+            assertTrue(B.isLegal(RED, move));
+            assertTrue(ai.stats().depth() < Defaults.MAX_SEARCH_DEPTH);
+            assertEquals(2, B.numPieces() - B.numSquares());
+
+            ai = new AI(game, RED, 0);
+            move = ai.searchForMove(B, RED, Defaults.MAX_SEARCH_DEPTH,
+                                    System.nanoTime() - 1, threads, true);
+            assertTrue(B.isLegal(RED, move));
+            assertTrue("depth 1 not completed", ai.stats().depth() >= 1);
+        }
+    }
+
+    @Test
+    public void testMCTSPlayer() {
+        Game game = new Game(null, (b) -> { }, null, false);
+        Board B = new Board(4);
+        B.addSpot(RED, 0);
+        B.addSpot(BLUE, 5);
+        long key = B.zobrist();
+        MCTSPlayer player = new MCTSPlayer(game, RED, 0);
+        int move = player.searchForMove(B, RED,
+                                         System.nanoTime() + 100_000_000L);
+        assertTrue(player.playouts() > 0);
+        assertTrue(B.isLegal(RED, move));
+        assertEquals(key, B.zobrist());
+    }
+
+    @Test
+    public void testOpeningBook() throws IOException {
+        File file = File.createTempFile("jump61", ".book");
+        file.deleteOnExit();
+        assertEquals(4, BookBuilder.build(4, 2, 3, file.getPath()));
+        OpeningBook book = OpeningBook.open(file.getPath());
+        assertEquals(4, book.size());
+        assertEquals(4, book.entries());
+        Board B = new Board(4);
+        assertTrue(B.isLegal(RED, book.move(B)));
+        for (int n = 0; n < B.numSquares(); n += 1) {
+            B.addSpot(RED, n);
+            int move = book.move(B);
+            assertTrue(B.isLegal(BLUE, move));
+            B.addSpot(BLUE, move);
+            assertEquals(-1, book.move(B));
+            B.undo();
+            B.undo();
+        }
+        assertEquals(-1, book.move(new Board(5)));
+    }
+
+    @Test
+    public void testSearchStats() {
+        Game game = new Game(null, (b) -> { }, null, false);
+        Board B = new Board(5);
+        B.addSpot(RED, 6);
+        B.addSpot(BLUE, 12);
+        AI ai = new AI(game, RED, 0);
+        long limit = System.nanoTime() + 60_000_000_000L;
+        ai.searchForMove(B, RED, 4, limit, 1, false);
+        SearchStats stats = ai.stats();
+        assertEquals(4, stats.depth());
+        assertEquals(ai.nodes(), stats.nodes());
+        assertTrue(stats.quiescenceNodes() > 0);
+        assertTrue(stats.quiescenceNodes() <= stats.nodes());
+        assertTrue(stats.cutoffs() > 0);
+        assertTrue(stats.firstMoveCutoffs() <= stats.cutoffs());
+        assertTrue(stats.hits() <= stats.probes());
+        assertTrue(stats.time() > 0);
+        ai.searchForMove(B, RED, 4, limit, 3, false);
+        assertEquals(4, ai.stats().depth());
+        assertTrue(ai.stats().nodes() > ai.nodes());
+    }
+
+    @Test
+    public void testForget() {
+        Game game = new Game(null, (b) -> { }, null, false);
+        Board B = new Board(5);
+        B.addSpot(RED, 6);
+        B.addSpot(BLUE, 12);
+        AI ai = new AI(game, RED, 0);
+        long limit = System.nanoTime() + 60_000_000_000L;
+        int move = ai.searchForMove(B, RED, 5, limit, 1, false);
+        long nodes = ai.nodes();
+        ai.searchForMove(B, RED, 5, limit, 1, false);
+        assertTrue("table did not help", ai.nodes() < nodes);
+        ai.forget();
+        assertEquals(move, ai.searchForMove(B, RED, 5, limit, 1, false));
+        assertEquals("search not repeated", nodes, ai.nodes());
+    }
+
+    @Test
+    public void testPondering() throws InterruptedException {
+        Game game = new Game(null, (b) -> { }, null, false);
+        AI ai = new AI(game, BLUE, 0);
+        ai.startPondering();
+        Thread.sleep(100);
+        long start = System.nanoTime();
+        ai.stopPondering();
+        assertTrue(System.nanoTime() - start < 1_000_000_000L);
+        assertTrue(ai.nodes() > 0);
+        ai.stopPondering();
+        Board B = new Board(game.getBoard());
+        B.addSpot(RED, 0);
+        int move = ai.searchForMove(B, BLUE, 3, System.nanoTime()
+                                    + 1_000_000_000L, 1, false);
+        assertTrue(B.isLegal(BLUE, move));
+    }
+
+    @Test
+    public void testClose() {
+        Game game = new Game(null, (b) -> { }, null, false);
+        AI ai = new AI(game, BLUE, 0);
+        Board B = new Board(game.getBoard());
+        B.addSpot(RED, 0);
+        long limit = System.nanoTime() + 1_000_000_000L;
+        assertTrue(B.isLegal(BLUE, ai.searchForMove(B, BLUE, 3, limit,
+                                                    2, true)));
+        ai.close();
+        ai.close();
+        assertTrue(B.isLegal(BLUE, ai.searchForMove(B, BLUE, 3, limit,
+                                                    2, false)));
+        ai.close();
+    }
+
+    @Test
+    public void testTablebase() throws IOException {
+        File file = File.createTempFile("jump61", ".tb");
+        file.deleteOnExit();
+        assertTrue(TablebaseBuilder.build(2, 2, file.getPath()) > 1);
+        Tablebase tablebase = Tablebase.open(file.getPath());
+        assertEquals(2, tablebase.size());
+        Board B = new Board(2);
+        int distance = tablebase.distance(B);
+        assertEquals(perfectDistance(B), distance);
+        while (B.getWinner() == null) {
+            assertEquals(distance, tablebase.distance(B));
+            int move = tablebase.move(B);
+            assertTrue(B.isLegal(B.whoseMove(), move));
+            B.addSpot(B.whoseMove(), move);
+            distance -= 1;
+        }
+        assertEquals(0, distance);
+        assertEquals(-1, tablebase.move(B));
+        assertEquals(-1, tablebase.move(new Board(3)));
+
+        assertEquals(288293, TablebaseBuilder.build(3, 2, file.getPath()));
+        tablebase = Tablebase.open(file.getPath());
+        B = Board.parse("===\n    2r 2r 1r\n    3r 4r 3r\n"
+                        + "    2r 3b 2b\n===");
+        assertEquals(BLUE, B.whoseMove());
+        assertEquals(1, tablebase.distance(B));
+        assertEquals(perfectDistance(B), tablebase.distance(B));
+        B.addSpot(BLUE, tablebase.move(B));
+        assertEquals(BLUE, B.getWinner());
+        B = Board.parse("===\n    2r 3r 2b\n    2r 3b 2b\n"
+                        + "    2r 3b 2b\n===");
+        assertEquals(RED, B.whoseMove());
+        assertEquals(2, tablebase.distance(B));
+        assertEquals(perfectDistance(B), tablebase.distance(B));
+        B = new Board(3);
+        distance = tablebase.distance(B);
+        assertEquals(0, distance % 2);
+        while (B.getWinner() == null) {
+            assertEquals(distance, tablebase.distance(B));
+            B.addSpot(B.whoseMove(), tablebase.move(B));
+            distance -= 1;
+        }
+        assertEquals(0, distance);
+    }
+
+    /** Return the number of moves left in the game on B with perfect
+     *  play, found by exhaustive search. */
+    private int perfectDistance(Board B) {
+        if (B.getWinner() != null) {
+            return 0;
+        }
+        int best = 0;
+        for (int i : validIndices(B, B.whoseMove())) {
+            B.addSpot(B.whoseMove(), i);
+            int d = 1 + perfectDistance(B);
+            B.undo();
+            if (Tablebase.better(d, best)) {
+                best = d;
+            }
+        }
+        return best;
+    }
+
     /** Checks that B conforms to the description given by CONTENTS.
      *  CONTENTS should be a sequence of groups of 4 items:
      *  r, c, n, s, where r and c are row and column number of a square of B,
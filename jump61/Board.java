@@ -1,13 +1,16 @@
 package jump61;
 
 import java.util.ArrayList;
-import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Formatter;
+import java.util.concurrent.ForkJoinPool;
 
-import java.util.Stack;
 import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static jump61.Side.*;
+import static jump61.GameException.error;
 import static jump61.Square.square;
 
 /** Represents the state of a Jump61 game.  Squares are indexed either by
@@ -27,41 +30,74 @@ class Board {
         _notifier = NOP;
     }
 
-    /** Current board state: represented by an Arraylist that stores squares
-     *  indexed from 0 to numSquares - 1. */
-    private ArrayList<Square> _gameBoard;
+    /** Current board state: one packed byte per square, indexed from 0 to
+     *  numSquares - 1.  Each entry holds (spots << SIDE_BITS) | side, where
+     *  side is the ordinal of the Side occupying the square (see code). */
+    private byte[] _contents;
     /** Size: length of rows and columns. */
     private int _size;
     /** Number of Squares: the total number of tiles in the board. */
     private int _numSquares;
+    /** Offsets into _nbrs of the neighbor list of each square (shared
+     *  with all Boards of my size; see Geometry). */
+    private int[] _nbrStart;
+    /** Neighbor lists of all squares, in compressed sparse row form. */
+    private int[] _nbrs;
+    /** Capacity (number of neighbors) of each square. */
+    private byte[] _capacity;
+    /** Zobrist keys for my size (see Geometry.zobrist()). */
+    private long[] _zobristKeys;
+    /** Neighbor and capacity information for my size.  On large boards,
+     *  _nbrStart, _nbrs, and _capacity are null and this computes them. */
+    private Geometry _geometry;
     /** Number of moves: records the current move number. */
     private int _numMoves;
     /** Game Over? returns true if the game is over and false otherwise. */
     private boolean _gameOver;
+    /** Total number of spots on the board. */
+    private int _numPieces;
+    /** Number of squares occupied by each Side, indexed by ordinal. */
+    private final int[] _sideCount = new int[SIDES.length];
+    /** Zobrist hash of my contents: the exclusive or of the Zobrist keys
+     *  of all squares (see Geometry). */
+    private long _zobrist;
+    /** For each symmetry T > 0, the Zobrist hash of my contents after
+     *  applying T (see zobrist(T)).  Not maintained on large boards. */
+    private final long[] _symZobrist = new long[Geometry.SYMMETRIES];
+    /** For each symmetry T > 0, the images of squares under T (see
+     *  Geometry.images). */
+    private final int[][] _images = new int[Geometry.SYMMETRIES][];
+    /** For each Side (by ordinal), the set of squares it occupies, as a
+     *  bit set: square #N is bit N % 64 of word N / 64. */
+    private final long[][] _owned = new long[SIDES.length][];
+    /** Evaluation features, kept up to date as squares change and indexed
+     *  by Side ordinal: number of spots, number of critical squares, edge
+     *  weight, and number of threatened pairs (see spotsOf,
+     *  criticalSquares, edgeWeight, and threatenedSquares). */
+    private final int[]
+        _sideSpots = new int[SIDES.length],
+        _critical = new int[SIDES.length],
+        _edgeWeight = new int[SIDES.length],
+        _threatened = new int[SIDES.length];
 
     /** An N x N board in initial configuration. */
     Board(int N) {
         this();
-        _size = N;
-        _numSquares = _size * _size;
-        _gameBoard = new ArrayList<Square>(_numSquares);
-        for (int i = 0; i < (_numSquares); i += 1) {
-            _gameBoard.add(Square.square(WHITE, 1));
-        }
+        setSize(N);
+        _contents = new byte[_numSquares];
+        Arrays.fill(_contents, INITIAL_CODE);
+        recount();
         _gameOver = false;
-        save();
     }
 
     /** A board whose initial contents are copied from BOARD0, but whose
      *  undo history is clear, and whose notifier does nothing. */
     Board(Board board0) {
-        _size = board0.size();
-        _numSquares = _size * _size;
+        this();
+        setSize(board0.size());
         _numMoves = 0;
-        _gameBoard = new ArrayList<Square>(_numSquares);
-        for (int i = 0; i < (_numSquares); i += 1) {
-            _gameBoard.add(board0.board().get(i));
-        }
+        _contents = unwrap(board0)._contents.clone();
+        recount();
         _gameOver = getWinner() != null;
         _readonlyBoard = new ConstantBoard(this);
     }
@@ -71,13 +107,52 @@ class Board {
         return null;
     }
 
-    /** Copies the game board from ArrayList FROM to ArrayList TO. */
-    public void copyGameBoard(ArrayList<Square> from, ArrayList<Square> to) {
-        for (int i = 0; i < from.size(); i += 1) {
-            Side side = from.get(i).getSide();
-            int spots = from.get(i).getSpots();
-            to.set(i, Square.square(side, spots));
+    /** Returns the Board holding the actual contents of B: B itself, or
+     *  the Board underlying B if B is a read-only view. */
+    private static Board unwrap(Board b) {
+        Board underlying = b.getBoard();
+        return underlying == null ? b : underlying;
+    }
+
+    /** Set my dimensions to N x N, along with the matching neighbor and
+     *  capacity tables.  Does not change my contents. */
+    private void setSize(int N) {
+        Geometry geometry = Geometry.of(N);
+        _size = N;
+        _numSquares = N * N;
+        _geometry = geometry;
+        _nbrStart = geometry.start();
+        _nbrs = geometry.neighbors();
+        _capacity = geometry.capacity();
+        _zobristKeys = geometry.zobrist();
+        for (int t = 1; t < Geometry.SYMMETRIES; t += 1) {
+            _images[t] = geometry.images(t);
+        }
+        int queueSize = Math.min(_numSquares, QUEUE_INIT);
+        if (_workQueue == null || _workQueue.length > _numSquares) {
+            _workQueue = new int[queueSize];
         }
+        if (_stamps == null || _stamps.length != _numSquares) {
+            _stamps = new int[_numSquares];
+        }
+        newEpoch();
+    }
+
+    /** Return true iff THIS is a large board: one with more than
+     *  Defaults.MAX_BOARD_SIZE squares on a side.  Large boards do not
+     *  keep per-square neighbor tables. */
+    boolean isLarge() {
+        return size() > Defaults.MAX_BOARD_SIZE;
+    }
+
+    /** Return the neighbor and capacity information for my size. */
+    Geometry geometry() {
+        return _geometry;
+    }
+
+    /** Return the capacity of square #N. */
+    private int capacity(int n) {
+        return _capacity != null ? _capacity[n] : _geometry.capacity(n);
     }
 
     /** Returns a readonly version of this board. */
@@ -85,9 +160,14 @@ class Board {
         return _readonlyBoard;
     }
 
-    /** Return the board state of THIS. */
+    /** Return a list of the squares of THIS in square-number order.  The
+     *  list is a fresh copy; changing it does not affect THIS. */
     ArrayList<Square> board() {
-        return _gameBoard;
+        ArrayList<Square> result = new ArrayList<Square>(_numSquares);
+        for (int i = 0; i < _numSquares; i += 1) {
+            result.add(get(i));
+        }
+        return result;
     }
 
     /** Return the number of rows and of columns of THIS. */
@@ -103,13 +183,11 @@ class Board {
     /** (Re)initialize me to a cleared board with N squares on a side. Clears
      *  the undo history and sets the number of moves to 0. */
     void clear(int N) {
-        _size = N;
-        _numSquares = _size * _size;
+        setSize(N);
         _numMoves = 0;
-        _gameBoard = new ArrayList<Square>(_numSquares);
-        for (int i = 0; i < (_numSquares); i += 1) {
-            _gameBoard.add(Square.square(WHITE, 1));
-        }
+        _contents = new byte[_numSquares];
+        Arrays.fill(_contents, INITIAL_CODE);
+        recount();
         _gameOver = false;
         restart();
         announce();
@@ -124,13 +202,10 @@ class Board {
      *  history. Assumes BOARD and I have the same size. */
     private void internalCopy(Board board) {
         assert size() == board.size();
-        _size = board.size();
-        _numSquares = _size * _size;
+        setSize(board.size());
         _numMoves = 0;
-        _gameBoard = new ArrayList<Square>(_numSquares);
-        for (int i = 0; i < (_numSquares); i += 1) {
-            _gameBoard.add(board.board().get(i));
-        }
+        _contents = unwrap(board)._contents.clone();
+        recount();
         _gameOver = getWinner() != null;
     }
 
@@ -144,16 +219,208 @@ class Board {
      *  squares in row 1 number 0 - size()-1, in row 2 numbered
      *  size() - 2*size() - 1, etc. */
     Square get(int n) {
-        return board().get(n);
+        int code = _contents[n] & 0xff;
+        return Square.square(SIDES[code & SIDE_MASK], code >>> SIDE_BITS);
+    }
+
+    /** Returns the number of spots on square #N. */
+    int spots(int n) {
+        return (_contents[n] & 0xff) >>> SIDE_BITS;
+    }
+
+    /** Returns the Side occupying square #N. */
+    Side side(int n) {
+        return SIDES[_contents[n] & SIDE_MASK];
+    }
+
+    /** Returns the packed code for a square occupied by SIDE holding
+     *  SPOTS spots. */
+    static byte code(Side side, int spots) {
+        assert spots < (1 << (8 - SIDE_BITS));
+        return (byte) ((spots << SIDE_BITS) | side.ordinal());
+    }
+
+    /** Set square #N to the packed CODE, keeping the running spot and
+     *  square counts up to date.  All changes to individual squares go
+     *  through here.  Only the first change to square #N in each epoch
+     *  (see newEpoch) is recorded in the undo journal: rolling back to
+     *  the start of the epoch needs only the square's contents then. */
+    void put(int n, byte code) {
+        if (_stamps[n] != _epoch) {
+            _stamps[n] = _epoch;
+            if (_journalSize == _journal.length) {
+                _journal = Arrays.copyOf(_journal, 2 * _journal.length);
+            }
+            _journal[_journalSize] =
+                (n << JOURNAL_SHIFT) | (_contents[n] & 0xff);
+            _journalSize += 1;
+        }
+        update(n, code);
+    }
+
+    /** Set square #N to the packed CODE without recording the change in
+     *  the undo journal, keeping the running counts up to date. */
+    private void update(int n, byte code) {
+        byte old = _contents[n];
+        addFeatures(n, -1);
+        _contents[n] = code;
+        addFeatures(n, 1);
+        _zobrist ^= zobristKey(n, old) ^ zobristKey(n, code);
+        if (_zobristKeys != null) {
+            for (int t = 1; t < Geometry.SYMMETRIES; t += 1) {
+                int image = _images[t][n];
+                _symZobrist[t] ^=
+                    zobristKey(image, old) ^ zobristKey(image, code);
+            }
+        }
+        if (((old ^ code) & SIDE_MASK) != 0) {
+            _owned[old & SIDE_MASK][n >>> 6] &= ~(1L << n);
+            _owned[code & SIDE_MASK][n >>> 6] |= 1L << n;
+        }
+        _numPieces += ((code & 0xff) >>> SIDE_BITS)
+            - ((old & 0xff) >>> SIDE_BITS);
+        _sideCount[old & SIDE_MASK] -= 1;
+        _sideCount[code & SIDE_MASK] += 1;
+    }
+
+    /** Recompute the running spot and square counts and evaluation
+     *  features from scratch, after the contents have been replaced
+     *  wholesale. */
+    private void recount() {
+        _numPieces = 0;
+        _zobrist = 0;
+        Arrays.fill(_symZobrist, 0);
+        Arrays.fill(_sideCount, 0);
+        Arrays.fill(_sideSpots, 0);
+        Arrays.fill(_critical, 0);
+        Arrays.fill(_edgeWeight, 0);
+        Arrays.fill(_threatened, 0);
+        int words = (_numSquares + Long.SIZE - 1) / Long.SIZE;
+        for (int k = 0; k < _owned.length; k += 1) {
+            if (_owned[k] == null || _owned[k].length != words) {
+                _owned[k] = new long[words];
+            } else {
+                Arrays.fill(_owned[k], 0);
+            }
+        }
+        for (int i = 0; i < _numSquares; i += 1) {
+            _owned[_contents[i] & SIDE_MASK][i >>> 6] |= 1L << i;
+            _numPieces += (_contents[i] & 0xff) >>> SIDE_BITS;
+            _sideCount[_contents[i] & SIDE_MASK] += 1;
+            _zobrist ^= zobristKey(i, _contents[i]);
+            if (_zobristKeys != null) {
+                for (int t = 1; t < Geometry.SYMMETRIES; t += 1) {
+                    _symZobrist[t] ^= zobristKey(_images[t][i], _contents[i]);
+                }
+            }
+            addFeatures(i, 1);
+        }
+        for (int k = 0; k < _threatened.length; k += 1) {
+            _threatened[k] /= 2;
+        }
+    }
+
+    /** Add SIGN times the contributions of square #N's current contents
+     *  to the evaluation features: those of the square itself, and those
+     *  of the (threatened, threatening) pairs it forms with each of its
+     *  neighbors.  (Summing over all squares thus counts each pair
+     *  twice.) */
+    private void addFeatures(int n, int sign) {
+        int code = _contents[n] & 0xff;
+        int side = code & SIDE_MASK;
+        int cap = capacity(n);
+        boolean critical = (code >>> SIDE_BITS) >= cap;
+        _sideSpots[side] += sign * (code >>> SIDE_BITS);
+        _edgeWeight[side] += sign * (MAX_CAPACITY - cap);
+        if (critical) {
+            _critical[side] += sign;
+        }
+        if (side == WHITE.ordinal()) {
+            return;
+        }
+        int[] nbrs = _nbrs, scratch = _featureNbrs;
+        int k0, k1;
+        if (nbrs != null) {
+            k0 = _nbrStart[n];
+            k1 = _nbrStart[n + 1];
+        } else {
+            nbrs = scratch;
+            k0 = 0;
+            k1 = _geometry.neighbors(n, scratch);
+        }
+        for (int k = k0; k < k1; k += 1) {
+            int m = nbrs[k];
+            int other = _contents[m] & 0xff;
+            if ((other & SIDE_MASK) + side == OPPOSED) {
+                if (critical) {
+                    _threatened[other & SIDE_MASK] += sign;
+                }
+                if ((other >>> SIDE_BITS) >= capacity(m)) {
+                    _threatened[side] += sign;
+                }
+            }
+        }
+    }
+
+    /** Return the Zobrist key of square #N holding packed code CODE. */
+    private long zobristKey(int n, byte code) {
+        if (_zobristKeys != null) {
+            return _zobristKeys[n * Geometry.CODES + (code & 0xff)];
+        }
+        return _geometry.zobrist(n, code & 0xff);
+    }
+
+    /** Return a 64-bit hash of my contents.  Boards with equal contents
+     *  have equal hashes, and boards with different contents almost
+     *  always have different ones.  Maintained incrementally, so this
+     *  takes constant time. */
+    long zobrist() {
+        return _zobrist;
+    }
+
+    /** Return the Zobrist hash (see zobrist()) of the board obtained by
+     *  applying symmetry T (see Geometry) to me.  Large boards do not
+     *  keep these, and return zobrist() for all T. */
+    long zobrist(int t) {
+        if (t == 0 || _zobristKeys == null) {
+            return _zobrist;
+        }
+        return _symZobrist[t];
+    }
+
+    /** Return the symmetry T for which zobrist(T) is least, identifying
+     *  the canonical orientation of my contents.  All boards that are
+     *  rotations or reflections of each other have the same canonical
+     *  orientation, and so the same least key.  Always 0 for large
+     *  boards. */
+    int canonicalSymmetry() {
+        if (_zobristKeys == null) {
+            return 0;
+        }
+        int best = 0;
+        long bestKey = _zobrist;
+        for (int t = 1; t < Geometry.SYMMETRIES; t += 1) {
+            if (_symZobrist[t] < bestKey) {
+                best = t;
+                bestKey = _symZobrist[t];
+            }
+        }
+        return best;
+    }
+
+    /** Return true iff my contents are unchanged by symmetry T. */
+    boolean symmetric(int t) {
+        for (int n = 0; n < _numSquares; n += 1) {
+            if (_contents[n] != _contents[_geometry.image(t, n)]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /** Returns the total number of spots on the board. */
     int numPieces() {
-        int total = 0;
-        for (Square s: board()) {
-            total += s.getSpots();
-        }
-        return total;
+        return _numPieces;
     }
 
     /** Returns the Side of the player who would be next to move. If the
@@ -207,9 +474,35 @@ class Board {
     /** Returns true iff it would currently be legal for PLAYER to add a spot
      *  to square #N. */
     boolean isLegal(Side player, int n) {
-        Side existingSide = board().get(n).getSide();
         return isLegal(player)
-                && (player.equals(existingSide) || WHITE.equals(existingSide));
+                && player.playableSquare(SIDES[_contents[n] & SIDE_MASK]);
+    }
+
+    /** Store the numbers of the squares where PLAYER (RED or BLUE) may
+     *  legally add a spot into MOVES, in increasing order, and return how
+     *  many there are.  MOVES must have room for numSquares() entries.
+     *  This reads the per-side sets of occupied squares that I keep up to
+     *  date, and so is much faster than testing each square with
+     *  isLegal. */
+    int legalMoves(Side player, int[] moves) {
+        assert player != WHITE;
+        if (!isLegal(player)) {
+            return 0;
+        }
+        long[] opposing = _owned[player.opposite().ordinal()];
+        int count = 0;
+        for (int k = 0; k < opposing.length; k += 1) {
+            long free = ~opposing[k];
+            if (k == opposing.length - 1 && (_numSquares & 63) != 0) {
+                free &= (1L << _numSquares) - 1;
+            }
+            while (free != 0) {
+                moves[count] = (k << 6) + Long.numberOfTrailingZeros(free);
+                count += 1;
+                free &= free - 1;
+            }
+        }
+        return count;
     }
 
     /** Returns true iff PLAYER is allowed to move at this point. */
@@ -219,30 +512,43 @@ class Board {
 
     /** Returns the winner of the current position, if the game is over,
      *  and otherwise null. */
-    final Side getWinner() {
-        Side refSide = board().get(0).getSide();
-        if (refSide.equals(WHITE)) {
-            return null;
-        }
-        if (refSide.equals(BLUE) || refSide.equals(RED))  {
-            for (Square s: board()) {
-                if (!s.getSide().equals(refSide)) {
-                    return null;
-                }
-            }
+    Side getWinner() {
+        if (_sideCount[RED.ordinal()] == _numSquares) {
+            return RED;
+        } else if (_sideCount[BLUE.ordinal()] == _numSquares) {
+            return BLUE;
         }
-        return refSide;
+        return null;
+    }
+
+    /** Return the total number of spots on squares of SIDE. */
+    int spotsOf(Side side) {
+        return _sideSpots[side.ordinal()];
+    }
+
+    /** Return the number of SIDE's squares that are at (or above)
+     *  capacity, and so will jump when another spot is added. */
+    int criticalSquares(Side side) {
+        return _critical[side.ordinal()];
+    }
+
+    /** Return the sum over SIDE's squares of 4 - capacity: 2 for each
+     *  corner and 1 for each other edge square. */
+    int edgeWeight(Side side) {
+        return _edgeWeight[side.ordinal()];
+    }
+
+    /** Return the number of pairs of adjacent squares in which the first
+     *  belongs to SIDE and the second is a critical square (see
+     *  criticalSquares) of the opponent, which could capture the first
+     *  on its next move. */
+    int threatenedSquares(Side side) {
+        return _threatened[side.ordinal()];
     }
 
     /** Return the number of squares of given SIDE. */
     int numOfSide(Side side) {
-        int squares = 0;
-        for (Square s: board()) {
-            if (s.getSide().equals(side)) {
-                squares += 1;
-            }
-        }
-        return squares;
+        return _sideCount[side.ordinal()];
     }
 
     /** Add a spot from PLAYER at row R, column C.  Assumes
@@ -253,19 +559,18 @@ class Board {
 
     /** Add a spot from PLAYER at square #N.  Assumes isLegal(PLAYER, N). */
     void addSpot(Side player, int n) {
+        save();
         internalAddSpot(player, n);
         _numMoves += 1;
-        save();
     }
 
     /** Add a spot from PLAYER at square #N.  Assumes isLegal(PLAYER, N).
      *  Does not save. */
     void internalAddSpot(Side player, int n) {
         assert isLegal(player, n);
-        int ogSpots = board().get(n).getSpots();
-        int newSpots = ogSpots + 1;
-        _gameBoard.set(n, Square.square(player, newSpots));
-        if (newSpots > neighbors(n)) {
+        int newSpots = spots(n) + 1;
+        put(n, code(player, newSpots));
+        if (newSpots > capacity(n)) {
             jump(n);
         }
     }
@@ -289,9 +594,9 @@ class Board {
     private void internalSet(int n, int num, Side player) {
         assert num >= 0;
         if (num == 0) {
-            _gameBoard.set(n, Square.square(WHITE, 1));
+            put(n, INITIAL_CODE);
         } else {
-            _gameBoard.set(n, Square.square(player, num));
+            put(n, code(player, num));
         }
     }
 
@@ -299,100 +604,226 @@ class Board {
      *  can only undo back to the last point at which the undo history
      *  was cleared, or the construction of this Board. */
     void undo() {
+        assert _numMarks > 0;
         _numMoves -= 1;
-        _history.pop();
-        copyGameBoard(_history.peek().board(), _gameBoard);
-        if (_gameOver) {
-            _gameOver = false;
-        }
+        _numMarks -= 1;
+        rollback(_moveMarks[_numMarks]);
     }
 
-    /** Record a move into undo history. */
-    private void save() {
-        if (history().size() == 0) {
-            _history.push(new Board(this));
-        }
-        _history.push(new Board(this));
+    /** Return the current length of the undo journal. */
+    int journalSize() {
+        return _journalSize;
     }
 
-    /** Resets a board's undo history. */
-    private void restart() {
-        _history = new Stack<Board>();
-        save();
+    /** Return a mark to pass to rollback, to undo the changes to squares
+     *  made from now on. */
+    int mark() {
+        newEpoch();
+        return _journalSize;
     }
 
-    /** History: a Stack of boards that represent past boards where the
-     *  first index is the starting board configuration and the last index is
-     *  the most recent move recorded. */
-    private Stack<Board> _history = new Stack<Board>();
+    /** Undo all changes to squares made since MARK was returned by
+     *  mark, including any win they brought about. */
+    void rollback(int mark) {
+        while (_journalSize > mark) {
+            _journalSize -= 1;
+            int entry = _journal[_journalSize];
+            update(entry >>> JOURNAL_SHIFT, (byte) entry);
+        }
+        newEpoch();
+        _gameOver = getWinner() != null;
+    }
 
-    /** returns history ArrayList as an object array. */
-    public Stack<Board> history() {
-        return _history;
+    /** Record the start of a move in the undo history. */
+    private void save() {
+        if (_numMarks == _moveMarks.length) {
+            _moveMarks = Arrays.copyOf(_moveMarks, 2 * _moveMarks.length);
+        }
+        _moveMarks[_numMarks] = mark();
+        _numMarks += 1;
+    }
+
+    /** Start a new epoch of the undo journal.  Must be called whenever
+     *  the journal is marked or rolled back, so that each square is
+     *  journaled at most once between marks. */
+    private void newEpoch() {
+        _epoch += 1;
+        if (_epoch == 0) {
+            Arrays.fill(_stamps, 0);
+            _epoch = 1;
+        }
     }
 
-    /** Index of History: index of the most recent history in history
-     *  Arraylist. */
-    private int _historyIndex;
+    /** Resets a board's undo history. */
+    private void restart() {
+        _journalSize = 0;
+        _numMarks = 0;
+        newEpoch();
+    }
+
+    /** Undo journal: one entry for the first change to a square in each
+     *  epoch, in order, each holding (square number << JOURNAL_SHIFT) |
+     *  previous packed code.  Only _journalSize entries are in use. */
+    private int[] _journal = new int[JOURNAL_INIT];
+    /** Number of entries in use in _journal. */
+    private int _journalSize;
+    /** Journal sizes at the start of each recorded move, oldest first.
+     *  Only _numMarks entries are in use. */
+    private int[] _moveMarks = new int[JOURNAL_INIT];
+    /** Number of moves recorded in _moveMarks. */
+    private int _numMarks;
+    /** The epoch in which each square was last journaled. */
+    private int[] _stamps;
+    /** The current epoch (never 0, so that new squares are unstamped). */
+    private int _epoch = 1;
 
     /** Add DELTASPOTS spots of side PLAYER to row R, column C,
      *  updating counts of numbers of squares of each color. */
     private void simpleAdd(Side player, int r, int c, int deltaSpots) {
-        internalSet(r, c, deltaSpots + get(r, c).getSpots(), player);
+        internalSet(r, c, deltaSpots + spots(sqNum(r, c)), player);
     }
 
     /** Add DELTASPOTS spots of color PLAYER to square #N,
      *  updating counts of numbers of squares of each color. */
     private void simpleAdd(Side player, int n, int deltaSpots) {
-        internalSet(n, deltaSpots + get(n).getSpots(), player);
+        internalSet(n, deltaSpots + spots(n), player);
     }
 
-    /** Used in jump to keep track of squares needing processing.  Allocated
-     *  here to cut down on allocations. */
-    private final ArrayDeque<Integer> _workQueue = new ArrayDeque<>();
+    /** Used in jump to keep track of squares needing processing, as a
+     *  circular queue.  Each over-full square is queued at most once at a
+     *  time, so it never needs more than numSquares entries; it starts
+     *  smaller and grows as needed.  Allocated here to cut down on
+     *  allocations. */
+    private int[] _workQueue;
+
+    /** Scratch space for the neighbors of one square on large boards. */
+    private final int[] _nbrScratch = new int[4];
+    /** Scratch space for the neighbors of one square on large boards,
+     *  for use by addFeatures. */
+    private final int[] _featureNbrs = new int[4];
 
     /** Do all jumping on this board, assuming that initially, S is the only
-     *  square that might be over-full. */
+     *  square that might be over-full.  Very large boards hand the work to
+     *  a ParallelCascade, which produces the same result. */
     private void jump(int S) {
-        Square square = board().get(S);
-        Side side = square.getSide();
-        int size = size();
-        int[] up = {row(S) - 1, col(S)};
-        int[] right = {row(S), col(S) + 1};
-        int[] down = {row(S) + 1, col(S)};
-        int[] left = {row(S), col(S) - 1};
-        int[][] directionals = new int[][]{up, right, down, left};
-        _gameBoard.set(S,
-                Square.square(side, square.getSpots() - neighbors(S)));
-        for (int[] direction: directionals) {
-            if (exists(direction[0], direction[1])) {
-                Square neighbor = board().get(
-                        sqNum(direction[0], direction[1]));
-                if (neighbor.getSide() != side) {
-                    _gameBoard.set(sqNum(direction[0], direction[1]),
-                            Square.square(side, neighbor.getSpots()));
-                }
-                if (getWinner() != null) {
+        boolean parallel;
+        switch (_cascadeMode) {
+        case PARALLEL_CASCADE:
+            parallel = true;
+            break;
+        case SEQUENTIAL_CASCADE:
+            parallel = false;
+            break;
+        default:
+            parallel = _size >= ParallelCascade.MIN_SIZE
+                && ForkJoinPool.getCommonPoolParallelism() > 1;
+            break;
+        }
+        if (parallel) {
+            if (_parallel == null || _parallel.size() != _size) {
+                _parallel = new ParallelCascade(this);
+            }
+            _parallel.resolve(S);
+        } else {
+            sequentialJump(S);
+        }
+    }
+
+    /** Resolve all cascades with a ParallelCascade iff ON, regardless of
+     *  board size.  By default, a ParallelCascade is used only on boards
+     *  with at least ParallelCascade.MIN_SIZE squares on a side, and only
+     *  when more than one thread is available to it. */
+    void setParallelCascade(boolean on) {
+        _cascadeMode = on ? PARALLEL_CASCADE : SEQUENTIAL_CASCADE;
+    }
+
+    /** How cascades are resolved: AUTO_CASCADE, SEQUENTIAL_CASCADE, or
+     *  PARALLEL_CASCADE. */
+    private int _cascadeMode = AUTO_CASCADE;
+    /** The resolver used for cascades on very large boards, created on
+     *  first use. */
+    private ParallelCascade _parallel;
+
+    /** Do all jumping on this board on the current thread, assuming that
+     *  initially, S is the only square that might be over-full.  Over-full
+     *  squares are resolved in the order in which they became over-full,
+     *  each distributing all its excess spots at once.  Stops as soon as
+     *  the side of S owns every square (after finishing the jump in
+     *  progress), leaving any other over-full squares as they are. */
+    void sequentialJump(int S) {
+        Side side = side(S);
+        int player = side.ordinal();
+        int[] queue = _workQueue;
+        int head = 0, size = 1;
+        queue[0] = S;
+        while (size > 0) {
+            int sq = queue[head];
+            head = head + 1 == queue.length ? 0 : head + 1;
+            size -= 1;
+            int cap = capacity(sq);
+            int spots = spots(sq);
+            int jumps = (spots - 1) / cap;
+            put(sq, code(side, spots - jumps * cap));
+            int[] nbrs;
+            int first, last;
+            if (_nbrs != null) {
+                nbrs = _nbrs;
+                first = _nbrStart[sq];
+                last = _nbrStart[sq + 1];
+            } else {
+                nbrs = _nbrScratch;
+                first = 0;
+                last = _geometry.neighbors(sq, nbrs);
+            }
+            for (int k = first; k < last; k += 1) {
+                int neighbor = nbrs[k];
+                int nCap = capacity(neighbor);
+                int nSpots = spots(neighbor);
+                put(neighbor, code(side, nSpots + jumps));
+                if (_sideCount[player] == _numSquares) {
                     _gameOver = true;
-                    break;
                 }
-                internalAddSpot(side, sqNum(direction[0], direction[1]));
+                if (nSpots <= nCap && nSpots + jumps > nCap) {
+                    if (size == queue.length) {
+                        queue = growQueue(head, size);
+                        head = 0;
+                    }
+                    int tail = head + size;
+                    queue[tail >= queue.length ? tail - queue.length : tail]
+                        = neighbor;
+                    size += 1;
+                }
+            }
+            if (_gameOver) {
+                return;
             }
         }
     }
 
+    /** Replace _workQueue, which is full and holds its SIZE entries
+     *  starting at HEAD, with one twice as large holding the same entries
+     *  starting at 0.  Returns the new queue. */
+    private int[] growQueue(int head, int size) {
+        int[] old = _workQueue;
+        int[] result = new int[2 * old.length];
+        System.arraycopy(old, head, result, 0, old.length - head);
+        System.arraycopy(old, 0, result, old.length - head, head);
+        _workQueue = result;
+        return result;
+    }
+
     /** Returns my dumped representation. */
     @Override
     public String toString() {
         Formatter out = new Formatter();
         out.format("===\n    ");
         for (int i = 0; i < _numSquares; i += 1) {
-            int spots = board().get(i).getSpots();
-            if (board().get(i).getSide() == WHITE) {
+            int spots = spots(i);
+            if (side(i) == WHITE) {
                 out.format("1-");
-            } else if (board().get(i).getSide() == RED) {
+            } else if (side(i) == RED) {
                 out.format("%dr", spots);
-            } else if (board().get(i).getSide() == BLUE) {
+            } else if (side(i) == BLUE) {
                 out.format("%db", spots);
             } else {
                 out.format("err");
@@ -410,6 +841,50 @@ class Board {
         return out.toString();
     }
 
+    /** Returns the Board whose dumped representation (as returned by
+     *  toString) is DUMP, with a clear undo history.  Throws a
+     *  GameException if DUMP is not the dump of a square board of at most
+     *  Defaults.MAX_BOARD_SIZE squares on a side, none holding more spots
+     *  than it has neighbors. */
+    static Board parse(String dump) {
+        String[] lines = dump.trim().split("\\R");
+        int size = lines.length - 2;
+        if (size < 1 || !lines[0].trim().equals("===")
+            || !lines[size + 1].trim().equals("===")) {
+            throw error("board dump must be rows between lines of ===");
+        }
+        if (size < 2 || size > Defaults.MAX_BOARD_SIZE) {
+            throw error("board dump must have between 2 and %d rows",
+                        Defaults.MAX_BOARD_SIZE);
+        }
+        Board board = new Board(size);
+        for (int r = 1; r <= size; r += 1) {
+            String[] squares = lines[r].trim().split("\\s+");
+            if (squares.length != size) {
+                throw error("row %d of board dump has %d squares, not %d",
+                            r, squares.length, size);
+            }
+            for (int c = 1; c <= size; c += 1) {
+                Matcher square = SQUARE_DUMP.matcher(squares[c - 1]);
+                if (!square.matches()) {
+                    throw error("bad square in board dump: %s",
+                                squares[c - 1]);
+                }
+                if (square.group(1) != null) {
+                    int spots = Integer.parseInt(square.group(1));
+                    if (spots > board.neighbors(r, c)) {
+                        throw error("too many spots on square %d %d",
+                                    r, c);
+                    }
+                    board.internalSet(r, c, spots,
+                                      square.group(2).equals("r") ? RED
+                                      : BLUE);
+                }
+            }
+        }
+        return new Board(board);
+    }
+
     /** Returns an external rendition of me, suitable for human-readable
      *  textual display, with row and column numbers.  This is distinct
      *  from the dumped representation (returned by toString). */
@@ -448,22 +923,26 @@ class Board {
 
     /** Returns the number of neighbors of square #N. */
     int neighbors(int n) {
-        return neighbors(row(n), col(n));
+        return capacity(n);
     }
 
+    /** Returns true iff OBJ is a Board (or a view of one) of my size with
+     *  the same contents as me. */
     @Override
     public boolean equals(Object obj) {
         if (!(obj instanceof Board)) {
             return false;
         } else {
-            Board B = (Board) obj;
-            return this == obj;
+            Board B = unwrap((Board) obj);
+            return this == B
+                || (_size == B._size && _zobrist == B._zobrist
+                    && Arrays.equals(_contents, B._contents));
         }
     }
 
     @Override
     public int hashCode() {
-        return numPieces();
+        return (int) (_zobrist ^ (_zobrist >>> 32));
     }
 
     /** Set my notifier to NOTIFY. */
@@ -477,6 +956,45 @@ class Board {
         _notifier.accept(this);
     }
 
+    /** Number of low-order bits of a packed square code holding the
+     *  ordinal of the occupying Side. */
+    static final int SIDE_BITS = 2;
+
+    /** Mask extracting the Side ordinal from a packed square code. */
+    static final int SIDE_MASK = (1 << SIDE_BITS) - 1;
+
+    /** Position of the square number in an undo journal entry. */
+    private static final int JOURNAL_SHIFT = 8;
+
+    /** Cascade modes: choose by board size, always resolve sequentially,
+     *  and always use a ParallelCascade. */
+    private static final int
+        AUTO_CASCADE = 0, SEQUENTIAL_CASCADE = 1, PARALLEL_CASCADE = 2;
+
+    /** Syntax of one square in a board dump: a number of spots (of at
+     *  most two digits) and the first letter of its color, or "1-" for a
+     *  white square. */
+    private static final Pattern SQUARE_DUMP =
+        Pattern.compile("([1-9][0-9]?)([rb])|1-");
+
+    /** Initial size of the work queue used by jump. */
+    private static final int QUEUE_INIT = 256;
+
+    /** Initial capacity of the undo journal. */
+    private static final int JOURNAL_INIT = 64;
+
+    /** Largest capacity of a square. */
+    private static final int MAX_CAPACITY = 4;
+
+    /** The sum of the ordinals of RED and BLUE. */
+    private static final int OPPOSED = RED.ordinal() + BLUE.ordinal();
+
+    /** Packed code of an unoccupied square. */
+    static final byte INITIAL_CODE = code(WHITE, 1);
+
+    /** The Sides, indexed by ordinal. */
+    private static final Side[] SIDES = Side.values();
+
     /** A notifier that does nothing. */
     private static final Consumer<Board> NOP = (s) -> { };
 
@@ -2,6 +2,8 @@ package jump61;
 
 import static jump61.Side.*;
 
+import java.util.Random;
+
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -23,6 +25,30 @@ public class BoardTest {
         assertEquals("bad length", 5, D.size());
     }
 
+    @Test
+    public void testConstantBoard() {
+        Board B = new Board(5);
+        B.addSpot(RED, 6);
+        ConstantBoard C = new ConstantBoard(B);
+        assertTrue("bad geometry", B.geometry() == C.geometry());
+        assertEquals("bad journal", B.journalSize(), C.journalSize());
+        String before = B.toString();
+        C.addSpot(BLUE, 7);
+        for (Runnable mutator : new Runnable[] {
+                () -> C.put(0, Board.code(BLUE, 1)), () -> C.mark(),
+                () -> C.rollback(0), () -> C.internalAddSpot(BLUE, 7),
+                () -> C.sequentialJump(6), () -> C.setParallelCascade(true)
+            }) {
+            try {
+                mutator.run();
+                fail("read-only board modified");
+            } catch (UnsupportedOperationException excp) {
+                /* Expected. */
+            }
+        }
+        assertEquals("read-only board modified", before, B.toString());
+    }
+
     @Test
     public void testSet() {
         Board B = new Board(5);
@@ -34,6 +60,18 @@ public class BoardTest {
         assertEquals("wrong count", 24, B.numOfSide(WHITE));
     }
 
+    @Test
+    public void testNeighbors() {
+        for (int N = 2; N <= 6; N += 1) {
+            Board B = new Board(N);
+            for (int n = 0; n < N * N; n += 1) {
+                assertEquals("wrong capacity at " + n,
+                             B.neighbors(B.row(n), B.col(n)),
+                             B.neighbors(n));
+            }
+        }
+    }
+
     @Test
     public void testMove() {
         Board B = new Board(6);
@@ -52,6 +90,272 @@ public class BoardTest {
         checkBoard("#0U", B);
     }
 
+    @Test
+    public void testCounts() {
+        Board B = new Board(2);
+        assertEquals("wrong spots", 4, B.numPieces());
+        B.addSpot(RED, 0);
+        B.addSpot(BLUE, 3);
+        B.addSpot(RED, 0);
+        assertEquals("wrong spots", 7, B.numPieces());
+        assertEquals("wrong count", 3, B.numOfSide(RED));
+        assertEquals("wrong count", 1, B.numOfSide(BLUE));
+        assertNull("premature winner", B.getWinner());
+        B.addSpot(BLUE, 3);
+        assertEquals("wrong winner", BLUE, B.getWinner());
+        assertEquals("wrong count", 4, B.numOfSide(BLUE));
+        B.undo();
+        assertNull("winner after undo", B.getWinner());
+        assertEquals("wrong spots", 7, B.numPieces());
+        assertEquals("wrong count", 3, B.numOfSide(RED));
+    }
+
+    @Test
+    public void testLongCascade() {
+        Board B = new Board(40);
+        for (int r = 1; r <= B.size(); r += 1) {
+            for (int c = 1; c <= B.size(); c += 1) {
+                B.set(r, c, B.neighbors(r, c), (r + c) % 7 == 0 ? BLUE : RED);
+            }
+        }
+        int pieces = B.numPieces();
+        B.addSpot(RED, 1, 1);
+        assertEquals("wrong winner", RED, B.getWinner());
+        assertEquals("spots not conserved", pieces + 1, B.numPieces());
+        B.undo();
+        assertNull("winner after undo", B.getWinner());
+        assertEquals("wrong spots after undo", pieces, B.numPieces());
+        int mark = B.mark();
+        B.internalAddSpot(RED, B.sqNum(1, 1));
+        assertEquals("wrong winner", RED, B.getWinner());
+        B.rollback(mark);
+        assertNull("winner after rollback", B.getWinner());
+        assertTrue("legal move refused after rollback", B.isLegal(RED, 1, 1));
+        assertEquals("wrong spots after rollback", pieces, B.numPieces());
+    }
+
+    @Test
+    public void testLargeBoard() {
+        Board B = new Board(Defaults.MAX_LARGE_BOARD_SIZE);
+        assertTrue("not large", B.isLarge());
+        int N = B.size();
+        assertEquals("bad corner", 2, B.neighbors(0));
+        assertEquals("bad edge", 3, B.neighbors(N - 2));
+        assertEquals("bad interior", 4, B.neighbors(N + 1));
+        for (int r = 1; r <= 30; r += 1) {
+            for (int c = 1; c <= 30; c += 1) {
+                B.set(r, c, B.neighbors(r, c), BLUE);
+            }
+        }
+        int pieces = B.numPieces();
+        B.addSpot(BLUE, 1, 1);
+        assertEquals("spots not conserved", pieces + 1, B.numPieces());
+        assertTrue("cascade did not spread", B.numOfSide(BLUE) > 900);
+        B.undo();
+        assertEquals("bad undo", 900, B.numOfSide(BLUE));
+        assertEquals("bad undo", pieces, B.numPieces());
+    }
+
+    @Test
+    public void testWholeBoardCascade() {
+        int N = Defaults.MAX_LARGE_BOARD_SIZE / 8;
+        for (boolean parallel : new boolean[] { false, true }) {
+            Board B = new Board(N);
+            B.setParallelCascade(parallel);
+            Random random = new Random(61);
+            for (int r = 1; r <= N; r += 1) {
+                for (int c = 1; c <= N; c += 1) {
+                    B.set(r, c, B.neighbors(r, c),
+                          random.nextInt(4) == 0 ? BLUE : RED);
+                }
+            }
+            B.set(1, 1, 2, RED);
+            String before = B.toString();
+            int journal = B.journalSize();
+            B.addSpot(RED, 1, 1);
+            assertEquals("wrong winner", RED, B.getWinner());
+            assertTrue("journal too long",
+                       B.journalSize() - journal <= 3 * B.numSquares());
+            B.undo();
+            assertNull("winner after undo", B.getWinner());
+            assertEquals("bad undo", before, B.toString());
+        }
+    }
+
+    @Test
+    public void testParallelCascade() {
+        int N = 80;
+        Board par = new Board(N), seq = new Board(N);
+        par.setParallelCascade(true);
+        seq.setParallelCascade(false);
+        Random random = new Random(61);
+        for (int r = 1; r <= N; r += 1) {
+            for (int c = 1; c <= N; c += 1) {
+                int spots = par.neighbors(r, c) - random.nextInt(2);
+                Side side = random.nextInt(4) == 0 ? BLUE : RED;
+                par.set(r, c, spots, side);
+                seq.set(r, c, spots, side);
+            }
+        }
+        for (int k = 0; k < 4 && seq.getWinner() == null; k += 1) {
+            int n = random.nextInt(N * N);
+            Side player = par.isLegal(RED, n) ? RED : BLUE;
+            par.addSpot(player, n);
+            seq.addSpot(player, n);
+            assertEquals("different results", seq.toString(), par.toString());
+        }
+        assertEquals("different winners", seq.getWinner(), par.getWinner());
+
+        par.clear(N);
+        seq.clear(N);
+        for (int r = 1; r <= N; r += 1) {
+            for (int c = 1; c <= N; c += 1) {
+                Side side = r + c == 2 * N ? BLUE : RED;
+                par.set(r, c, par.neighbors(r, c), side);
+                seq.set(r, c, seq.neighbors(r, c), side);
+            }
+        }
+        par.addSpot(RED, 1, 1);
+        seq.addSpot(RED, 1, 1);
+        assertEquals("wrong winner", RED, par.getWinner());
+        assertEquals("different results", seq.toString(), par.toString());
+        par.undo();
+        seq.undo();
+        assertEquals("different undo", seq.toString(), par.toString());
+    }
+
+    @Test
+    public void testZobrist() {
+        for (int N : new int[] { 4, Defaults.MAX_LARGE_BOARD_SIZE / 8 }) {
+            Board B = new Board(N), C = new Board(N);
+            long initial = B.zobrist();
+            assertEquals("initial boards differ", B, C);
+            B.addSpot(RED, 0);
+            B.addSpot(BLUE, N * N - 1);
+            B.addSpot(RED, 1);
+            assertNotEquals("different boards equal", B, C);
+            C.addSpot(RED, 1);
+            C.addSpot(BLUE, N * N - 1);
+            C.addSpot(RED, 0);
+            assertEquals("transposed boards differ", B, C);
+            assertEquals("bad hash", B.hashCode(), C.hashCode());
+            assertEquals("bad hash", new Board(B).zobrist(), B.zobrist());
+            B.addSpot(RED, 0);
+            B.addSpot(BLUE, N * N - 1);
+            assertEquals("bad hash", new Board(B).zobrist(), B.zobrist());
+            for (int k = 0; k < 5; k += 1) {
+                B.undo();
+            }
+            assertEquals("bad hash after undo", initial, B.zobrist());
+        }
+    }
+
+    @Test
+    public void testFeatures() {
+        Board B = new Board(3);
+        B.set(1, 1, 2, RED);
+        B.set(1, 2, 3, BLUE);
+        B.set(2, 2, 2, RED);
+        assertEquals(4, B.spotsOf(RED));
+        assertEquals(3, B.spotsOf(BLUE));
+        assertEquals(1, B.criticalSquares(RED));
+        assertEquals(1, B.criticalSquares(BLUE));
+        assertEquals(2, B.edgeWeight(RED));
+        assertEquals(1, B.edgeWeight(BLUE));
+        assertEquals(2, B.threatenedSquares(RED));
+        assertEquals(1, B.threatenedSquares(BLUE));
+        for (int N : new int[] { 5, Defaults.MAX_BOARD_SIZE + 2 }) {
+            B = new Board(N);
+            Random random = new Random(N);
+            int moves = 0;
+            while (B.getWinner() == null) {
+                Side player = B.whoseMove();
+                int n = random.nextInt(B.numSquares());
+                if (B.isLegal(player, n)) {
+                    B.addSpot(player, n);
+                    moves += 1;
+                    checkFeatures(B);
+                }
+            }
+            for (int k = 0; k < moves; k += 1) {
+                B.undo();
+            }
+            checkFeatures(B);
+            assertEquals(0, B.spotsOf(RED) + B.spotsOf(BLUE));
+        }
+    }
+
+    @Test
+    public void testLegalMoves() {
+        for (int N : new int[] { 5, 8, Defaults.MAX_BOARD_SIZE + 2 }) {
+            Board B = new Board(N);
+            Random random = new Random(N);
+            int[] moves = new int[B.numSquares()];
+            while (B.getWinner() == null) {
+                Side player = B.whoseMove();
+                int count = B.legalMoves(player, moves);
+                int k = 0;
+                for (int n = 0; n < B.numSquares(); n += 1) {
+                    if (B.isLegal(player, n)) {
+                        assertEquals(n, moves[k]);
+                        k += 1;
+                    }
+                }
+                assertEquals(k, count);
+                B.addSpot(player, moves[random.nextInt(count)]);
+            }
+            assertEquals(0, B.legalMoves(RED, moves));
+        }
+    }
+
+    /** Check that the evaluation features of B match those of a fresh
+     *  copy, which computes them from scratch. */
+    private void checkFeatures(Board B) {
+        Board C = new Board(B);
+        for (Side side : Side.values()) {
+            assertEquals(C.spotsOf(side), B.spotsOf(side));
+            assertEquals(C.criticalSquares(side), B.criticalSquares(side));
+            assertEquals(C.edgeWeight(side), B.edgeWeight(side));
+            assertEquals(C.threatenedSquares(side),
+                         B.threatenedSquares(side));
+        }
+    }
+
+    @Test
+    public void testSymmetry() {
+        int N = 6;
+        Board B = new Board(N);
+        for (int t = 0; t < Geometry.SYMMETRIES; t += 1) {
+            assertTrue(B.symmetric(t));
+            assertEquals(B.zobrist(), B.zobrist(t));
+        }
+        B.addSpot(RED, 1, 2);
+        B.addSpot(BLUE, 4, 4);
+        B.addSpot(RED, 1, 1);
+        B.addSpot(RED, 1, 1);
+        Geometry geometry = B.geometry();
+        long canonical = B.zobrist(B.canonicalSymmetry());
+        for (int t = 1; t < Geometry.SYMMETRIES; t += 1) {
+            assertFalse(B.symmetric(t));
+            Board C = new Board(N);
+            for (int n = 0; n < B.numSquares(); n += 1) {
+                int image = geometry.image(t, n);
+                C.set(C.row(image), C.col(image), B.spots(n), B.side(n));
+            }
+            assertEquals(B.zobrist(t), C.zobrist());
+            assertEquals(canonical, C.zobrist(C.canonicalSymmetry()));
+            assertEquals(7, geometry.image(Geometry.inverse(t),
+                                           geometry.image(t, 7)));
+        }
+        for (int k = 0; k < 4; k += 1) {
+            B.undo();
+        }
+        B.addSpot(RED, 1, 1);
+        assertTrue(B.symmetric(6));
+        assertFalse(B.symmetric(4));
+        assertEquals(B.zobrist(), B.zobrist(6));
+    }
+
     @Test
     public void testUndoNoRepeat() {
         Board B = new Board(3);
@@ -74,6 +378,48 @@ public class BoardTest {
         }
     }
 
+    @Test
+    public void testParse() {
+        Random random = new Random(61);
+        for (int N = 2; N <= 6; N += 1) {
+            Board B = new Board(N);
+            for (int k = 0; k < 3 * N; k += 1) {
+                int n;
+                do {
+                    n = random.nextInt(B.numSquares());
+                } while (!B.isLegal(B.whoseMove(), n));
+                B.addSpot(B.whoseMove(), n);
+                if (B.getWinner() != null) {
+                    B.undo();
+                    break;
+                }
+            }
+            Board C = Board.parse(B.toString());
+            assertEquals("parsed board differs", B, C);
+            assertEquals("wrong side to move", B.whoseMove(), C.whoseMove());
+            assertEquals("wrong winner", B.getWinner(), C.getWinner());
+            assertEquals("undo history not clear", 0, C.journalSize());
+        }
+        Board B = Board.parse("===\n    2r 1-\n    1- 1b\n===");
+        checkBoard("parsed", B, 1, 1, 2, RED, 2, 2, 1, BLUE);
+        for (String bad : new String[] {
+                "", "===\n===", "===\n    1- 1-\n    1-\n===",
+                "===\n    1- 1-\n    1- 1-", "===\n    0r 1-\n    1- 1-\n===",
+                "===\n    1w 1-\n    1- 1-\n===",
+                "===\n    3r 1-\n    1- 1-\n===",
+                "===\n    64r 1-\n    1- 1-\n===",
+                "===\n    99999999999r 1-\n    1- 1-\n===",
+                "===\n    1-\n===",
+                new Board(Defaults.MAX_BOARD_SIZE + 1).toString() }) {
+            try {
+                Board.parse(bad);
+                fail("parsed bad dump: " + bad);
+            } catch (GameException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
     /** Checks that B conforms to the description given by CONTENTS.
      *  CONTENTS should be a sequence of groups of 4 items:
      *  r, c, n, s, where r and c are row and column number of a square of B,
@@ -0,0 +1,106 @@
+package jump61;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/** A tool for making OpeningBooks.  It collects every position that can
+ *  arise in the first few moves of a game from an empty board (counting
+ *  positions that are rotations or reflections of each other once),
+ *  searches each to a fixed depth, and writes the results to a book file.
+ *  Run as
+ *      java jump61.BookBuilder SIZE MOVES DEPTH FILE
+ *  to cover the positions after 0 through MOVES - 1 moves on SIZE x SIZE
+ *  boards.
+ *  @author Ryan Shih
+ */
+public class BookBuilder {
+
+    /** Build a book as directed by ARGS (see the class comment). */
+    public static void main(String[] args) {
+        if (args.length != 4) {
+            System.err.println("Usage: java jump61.BookBuilder SIZE MOVES "
+                               + "DEPTH FILE");
+            System.exit(1);
+        }
+        try {
+            int size = Integer.parseInt(args[0]);
+            if (size < 2 || size > Defaults.MAX_BOARD_SIZE) {
+                System.err.printf("size must be between 2 and %d%n",
+                                  Defaults.MAX_BOARD_SIZE);
+                System.exit(1);
+            }
+            int entries = build(size, Integer.parseInt(args[1]),
+                                Integer.parseInt(args[2]), args[3]);
+            System.out.printf("%d positions written to %s%n", entries,
+                              args[3]);
+        } catch (NumberFormatException excp) {
+            System.err.println("bad number in arguments");
+            System.exit(1);
+        } catch (IOException excp) {
+            System.err.printf("could not write %s: %s%n", args[3],
+                              excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Write to FILENAME a book for SIZE x SIZE boards covering the
+     *  positions after fewer than MOVES moves, each searched to DEPTH.
+     *  Returns the number of positions in the book.  Requires that SIZE
+     *  be at most Defaults.MAX_BOARD_SIZE. */
+    static int build(int size, int moves, int depth, String fileName)
+        throws IOException {
+        ArrayList<Board> positions = new ArrayList<>();
+        collect(new Board(size), moves, new HashSet<>(), positions);
+        Game game = new Game(null, (b) -> { }, null, false);
+        int count = positions.size();
+        long[] keys = new long[count];
+        int[] bestMoves = new int[count];
+        int[] scores = new int[count];
+        for (int k = 0; k < count; k += 1) {
+            Board board = positions.get(k);
+            Side player = board.whoseMove();
+            AI ai = new AI(game, player, SEED);
+            int move = ai.searchForMove(board, player, depth,
+                                        System.nanoTime() + NO_LIMIT, 1,
+                                        false);
+            int symmetry = board.canonicalSymmetry();
+            keys[k] = board.zobrist(symmetry);
+            bestMoves[k] = board.geometry().image(symmetry, move);
+            scores[k] = ai.rootScore();
+            Utils.debug(1, "%d/%d: %s (%d)", k + 1, count,
+                        board.moveString(move), scores[k]);
+        }
+        OpeningBook.write(fileName, size, keys, bestMoves, scores);
+        return count;
+    }
+
+    /** Add to POSITIONS a copy of BOARD and of each position reachable
+     *  from it in fewer than MOVES moves, leaving out games that are over
+     *  and positions whose canonical keys are in SEEN (adding the keys of
+     *  those it adds). */
+    private static void collect(Board board, int moves, HashSet<Long> seen,
+                                ArrayList<Board> positions) {
+        if (moves <= 0 || board.getWinner() != null
+            || !seen.add(board.zobrist(board.canonicalSymmetry()))) {
+            return;
+        }
+        positions.add(new Board(board));
+        Side player = board.whoseMove();
+        int[] legal = new int[board.numSquares()];
+        int count = board.legalMoves(player, legal);
+        for (int k = 0; k < count; k += 1) {
+            board.addSpot(player, legal[k]);
+            collect(board, moves - 1, seen, positions);
+            board.undo();
+        }
+    }
+
+    /** Random seed for the AIs doing the searches. */
+    private static final long SEED = 61;
+
+    /** A time limit for searches, in nanoseconds, that is never
+     *  reached. */
+    private static final long NO_LIMIT = Long.MAX_VALUE / 2;
+
+}
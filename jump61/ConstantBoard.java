@@ -11,22 +11,8 @@ class ConstantBoard extends Board {
 
     /** A new ConstantBoard that allows a read-only view of BOARD. That is,
      *  all operations are delegated to BOARD. */
-    private ArrayList<Square> _boardState;
-
-    /** Size: length of rows and columns. */
-    private int _size;
-    /** Number of Squares: the total number of tiles in the board. */
-    private int _numSquares;
-
-    /** Constructor method that takes in BOARD. */
     ConstantBoard(Board board) {
         _board = board;
-        _size = board.size();
-        _numSquares = _size * _size;
-        _boardState = new ArrayList<Square>(_numSquares);
-        for (int i = 0; i < (_numSquares); i += 1) {
-            _boardState.add(board.board().get(i));
-        }
     }
 
     @Override
@@ -36,7 +22,7 @@ class ConstantBoard extends Board {
 
     @Override
     ArrayList<Square> board() {
-        return _boardState;
+        return _board.board();
     }
 
     @Override
@@ -49,11 +35,26 @@ class ConstantBoard extends Board {
         return _board.size();
     }
 
+    @Override
+    int numSquares() {
+        return _board.numSquares();
+    }
+
     @Override
     Square get(int n) {
         return _board.get(n);
     }
 
+    @Override
+    int spots(int n) {
+        return _board.spots(n);
+    }
+
+    @Override
+    Side side(int n) {
+        return _board.side(n);
+    }
+
     @Override
     int numPieces() {
         return _board.numPieces();
@@ -69,16 +70,86 @@ class ConstantBoard extends Board {
         return _board.isLegal(player, r, c);
     }
 
+    @Override
+    boolean isLegal(Side player, int n) {
+        return _board.isLegal(player, n);
+    }
+
     @Override
     boolean isLegal(Side player) {
         return _board.isLegal(player);
     }
 
+    @Override
+    Side getWinner() {
+        return _board.getWinner();
+    }
+
+    @Override
+    int legalMoves(Side player, int[] moves) {
+        return _board.legalMoves(player, moves);
+    }
+
     @Override
     int numOfSide(Side color) {
         return _board.numOfSide(color);
     }
 
+    @Override
+    int spotsOf(Side color) {
+        return _board.spotsOf(color);
+    }
+
+    @Override
+    int criticalSquares(Side color) {
+        return _board.criticalSquares(color);
+    }
+
+    @Override
+    int edgeWeight(Side color) {
+        return _board.edgeWeight(color);
+    }
+
+    @Override
+    int threatenedSquares(Side color) {
+        return _board.threatenedSquares(color);
+    }
+
+    @Override
+    int neighbors(int n) {
+        return _board.neighbors(n);
+    }
+
+    @Override
+    Geometry geometry() {
+        return _board.geometry();
+    }
+
+    @Override
+    int journalSize() {
+        return _board.journalSize();
+    }
+
+    @Override
+    long zobrist() {
+        return _board.zobrist();
+    }
+
+    @Override
+    long zobrist(int t) {
+        return _board.zobrist(t);
+    }
+
+    @Override
+    int canonicalSymmetry() {
+        return _board.canonicalSymmetry();
+    }
+
+    @Override
+    boolean symmetric(int t) {
+        return _board.symmetric(t);
+    }
+
     @Override
     public boolean equals(Object obj) {
         return _board.equals(obj);
@@ -120,6 +191,39 @@ class ConstantBoard extends Board {
     void undo() {
     }
 
+    /* Low-level mutators, used only by the search and cascade code on
+     * Boards they own, refused outright. */
+
+    @Override
+    void put(int n, byte code) {
+        throw new UnsupportedOperationException("read-only board");
+    }
+
+    @Override
+    int mark() {
+        throw new UnsupportedOperationException("read-only board");
+    }
+
+    @Override
+    void rollback(int mark) {
+        throw new UnsupportedOperationException("read-only board");
+    }
+
+    @Override
+    void internalAddSpot(Side player, int n) {
+        throw new UnsupportedOperationException("read-only board");
+    }
+
+    @Override
+    void sequentialJump(int s) {
+        throw new UnsupportedOperationException("read-only board");
+    }
+
+    @Override
+    void setParallelCascade(boolean on) {
+        throw new UnsupportedOperationException("read-only board");
+    }
+
     /** Board to which all operations are delegated. */
     private Board _board;
 
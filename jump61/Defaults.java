@@ -11,7 +11,29 @@ class Defaults {
     /** Default board size. */
     static final int BOARD_SIZE = 6;
 
-    /** Maximum number of squares on the side of a game board. */
+    /** Maximum number of squares on the side of a normal game board.
+     *  Larger boards are played in large-board mode (see Board.isLarge). */
     static final int MAX_BOARD_SIZE = 10;
 
+    /** Maximum number of squares on the side of a large board. */
+    static final int MAX_LARGE_BOARD_SIZE = 1024;
+
+    /** Default time allowed an AI for each move, in milliseconds. */
+    static final int MOVE_TIME = 1000;
+
+    /** Maximum depth (in moves) of AI searches. */
+    static final int MAX_SEARCH_DEPTH = 64;
+
+    /** Default number of threads used by each AI. */
+    static final int THREADS = 1;
+
+    /** Maximum number of threads used by each AI. */
+    static final int MAX_THREADS = 256;
+
+    /** Default size of an AI's transposition table, in megabytes. */
+    static final int TABLE_SIZE = 16;
+
+    /** Maximum size of an AI's transposition table, in megabytes. */
+    static final int MAX_TABLE_SIZE = 16384;
+
 }
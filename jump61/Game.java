@@ -1,5 +1,8 @@
 package jump61;
 
+import java.io.IOException;
+import java.util.HashMap;
+
 import static jump61.Side.*;
 import static jump61.GameException.error;
 import static jump61.Utils.*;
@@ -12,11 +15,17 @@ class Game {
     /** Name of resource containing help message. */
     private static final String HELP = "jump61/Help.txt";
 
+    /** The memory available to Java, divided by this, bounds the size of
+     *  each transposition table: there is one for each of two automated
+     *  players, and the rest of the program needs room too. */
+    private static final int TABLE_SHARE = 4;
+
     /** A list of all commands. */
     private static final String[] COMMAND_NAMES = {
         "auto", "board", "clear", "dump", "help", "manual",
-        "new", "q", "quiet", "quit",
-        "seed", "set", "size", "start", "verbose",
+        "new", "parallel", "q", "quiet", "quit",
+        "seed", "set", "size", "start", "stats", "table", "threads", "time",
+        "verbose",
     };
 
     /** A new Game that takes command/move input from INP, logs
@@ -64,8 +73,21 @@ class Game {
             _view.update(_board);
             if (_board.getWinner() == null) {
                 winnerAnnounced = false;
+                Player player = getPlayer(_board.whoseMove());
+                Player opponent = getPlayer(_board.whoseMove().opposite());
                 try {
-                    executeCommand(getPlayer(_board.whoseMove()).getMove());
+                    String move;
+                    if (player instanceof HumanPlayer) {
+                        opponent.startPondering();
+                        try {
+                            move = player.getMove();
+                        } finally {
+                            opponent.stopPondering();
+                        }
+                    } else {
+                        move = player.getMove();
+                    }
+                    executeCommand(move);
                 } catch (GameException e) {
                     reportError(e.getMessage());
                 }
@@ -77,6 +99,9 @@ class Game {
                 executeCommand(getCommand());
             }
         }
+        for (Player player : _players) {
+            player.close();
+        }
         return _exit;
     }
 
@@ -147,7 +172,22 @@ class Game {
 
     /** Make the player of COLOR an AI for subsequent moves. */
     private void setAuto(Side color) {
-        setPlayer(color, new AI(this, color, _seed));
+        setAuto(color, "minimax");
+    }
+
+    /** Make the player of COLOR an automated player for subsequent moves,
+     *  using ENGINE: "minimax" for an AI, or "mcts" for an MCTSPlayer. */
+    private void setAuto(Side color, String engine) {
+        switch (engine) {
+        case "minimax":
+            setPlayer(color, new AI(this, color, _seed));
+            break;
+        case "mcts":
+            setPlayer(color, new MCTSPlayer(this, color, _seed));
+            break;
+        default:
+            throw error("unknown automated player: %s", engine);
+        }
         _seed += 1;
     }
 
@@ -162,11 +202,137 @@ class Game {
         return _players[color.ordinal()];
     }
 
-    /** Set getPlayer(COLOR) to PLAYER. */
+    /** Set getPlayer(COLOR) to PLAYER, closing the Player it
+     *  replaces. */
     private void setPlayer(Side color, Player player) {
+        Player old = _players[color.ordinal()];
+        if (old != null) {
+            old.close();
+        }
         _players[color.ordinal()] = player;
     }
 
+    /** Return the size, in megabytes, of the transposition table that
+     *  AIs should use. */
+    int tableSize() {
+        return _tableSize;
+    }
+
+    /** Return the time, in milliseconds, that AIs may take for each
+     *  move. */
+    int moveTime() {
+        return _moveTime;
+    }
+
+    /** Return the number of threads each AI may use. */
+    int threads() {
+        return _threads;
+    }
+
+    /** Return true iff AIs using more than one thread should use Lazy
+     *  SMP (rather than dividing the root moves among threads). */
+    boolean lazySmp() {
+        return _lazySmp;
+    }
+
+    /** Return the opening book for SIZE x SIZE boards, or null if there
+     *  is none. */
+    OpeningBook book(int size) {
+        return _books.get(size);
+    }
+
+    /** Make the opening book in file FILENAME available to AIs, replacing
+     *  any book for the same board size. */
+    void addBook(String fileName) throws IOException {
+        OpeningBook book = OpeningBook.open(fileName);
+        _books.put(book.size(), book);
+    }
+
+    /** Return the tablebase for SIZE x SIZE boards, or null if there is
+     *  none. */
+    Tablebase tablebase(int size) {
+        return _tablebases.get(size);
+    }
+
+    /** Make the tablebase in file FILENAME available to AIs, replacing
+     *  any tablebase for the same board size. */
+    void addTablebase(String fileName) throws IOException {
+        Tablebase tablebase = Tablebase.open(fileName);
+        _tablebases.put(tablebase.size(), tablebase);
+    }
+
+    /** Record STATS as the counts of work done by the last search of
+     *  the AI playing SIDE. */
+    void recordStats(Side side, SearchStats stats) {
+        _stats[side.ordinal()] = stats;
+    }
+
+    /** Report the counts of work done by the last search of each AI. */
+    private void printStats() {
+        boolean any = false;
+        for (Side side : new Side[] { RED, BLUE }) {
+            SearchStats stats = _stats[side.ordinal()];
+            if (stats != null) {
+                _reporter.msg("%s: %s", side.toCapitalizedString(), stats);
+                any = true;
+            }
+        }
+        if (!any) {
+            _reporter.msg("No searches yet.");
+        }
+    }
+
+    /** Set the way AIs use several threads to MODE: "smp" for Lazy SMP,
+     *  or "root" to divide up root moves. */
+    private void setParallelMode(String mode) {
+        switch (mode) {
+        case "smp":
+            _lazySmp = true;
+            break;
+        case "root":
+            _lazySmp = false;
+            break;
+        default:
+            throw error("unknown parallel search mode: %s", mode);
+        }
+    }
+
+    /** Allow each AI to use N threads. */
+    private void setThreads(int n) {
+        if (n < 1 || n > Defaults.MAX_THREADS) {
+            throw error("number of threads must be between 1 and %d",
+                        Defaults.MAX_THREADS);
+        }
+        _threads = n;
+    }
+
+    /** Allow AIs MILLIS milliseconds for each move. */
+    private void setMoveTime(int millis) {
+        if (millis < 1) {
+            throw error("time per move must be positive");
+        }
+        _moveTime = millis;
+    }
+
+    /** Set the size of AI transposition tables to MEGABYTES. */
+    private void setTableSize(int megabytes) {
+        int max = maxTableSize();
+        if (megabytes < 1 || megabytes > max) {
+            throw error("table size must be between 1 and %d", max);
+        }
+        _tableSize = megabytes;
+    }
+
+    /** Return the largest size of AI transposition tables, in megabytes:
+     *  Defaults.MAX_TABLE_SIZE, or less if the memory available to Java
+     *  could not hold a table that size for each automated player, with
+     *  room to spare. */
+    static int maxTableSize() {
+        long available = Runtime.getRuntime().maxMemory() >> 20;
+        return (int) Math.max(1, Math.min(Defaults.MAX_TABLE_SIZE,
+                                          available / TABLE_SHARE));
+    }
+
     /** Clear the board to its initial state. */
     void clear() {
         _board.clear(_board.size());
@@ -207,11 +373,13 @@ class Game {
     }
 
     /** Stop any current game and set the board to an empty N x N board
-     *  with numMoves() == 0.  Requires 2 <= N <= 10. */
+     *  with numMoves() == 0.  Requires 2 <= N <= MAX_LARGE_BOARD_SIZE.
+     *  Sizes above MAX_BOARD_SIZE select large-board mode. */
     private void setSize(int n) {
         log("size %d", n);
-        if (n < 2 || n > 10) {
-            throw error("size must be between 2 and 10");
+        if (n < 2 || n > Defaults.MAX_LARGE_BOARD_SIZE) {
+            throw error("size must be between 2 and %d",
+                        Defaults.MAX_LARGE_BOARD_SIZE);
         }
         _board.clear(n);
     }
@@ -257,7 +425,8 @@ class Game {
             case "#": case "":
                 break;
             case "auto":
-                setAuto(toSide(parts[1]));
+                setAuto(toSide(parts[1]),
+                        parts.length > 2 ? parts[2] : "minimax");
                 break;
             case "board":
                 printBoard();
@@ -274,6 +443,9 @@ class Game {
             case "new":
                 clear();
                 break;
+            case "parallel":
+                setParallelMode(parts[1]);
+                break;
             case "quiet":
                 _verbose = false;
                 break;
@@ -290,6 +462,18 @@ class Game {
             case "size":
                 setSize(toInt(parts[1]));
                 break;
+            case "stats":
+                printStats();
+                break;
+            case "table":
+                setTableSize(toInt(parts[1]));
+                break;
+            case "time":
+                setMoveTime(toInt(parts[1]));
+                break;
+            case "threads":
+                setThreads(toInt(parts[1]));
+                break;
             case "verbose":
                 _verbose = true;
                 break;
@@ -351,6 +535,23 @@ class Game {
      *  indicates that the session is not over. */
     private int _exit;
 
+    /** True iff AIs use Lazy SMP for searches with several threads. */
+    private boolean _lazySmp;
+    /** Number of threads each AI may use. */
+    private int _threads = Defaults.THREADS;
+    /** Time allowed AIs per move, in milliseconds. */
+    private int _moveTime = Defaults.MOVE_TIME;
+    /** Size of AI transposition tables, in megabytes. */
+    private int _tableSize = Defaults.TABLE_SIZE;
+    /** Opening books for AIs, indexed by board size. */
+    private final HashMap<Integer, OpeningBook> _books = new HashMap<>();
+    /** Tablebases for AIs, indexed by board size. */
+    private final HashMap<Integer, Tablebase> _tablebases = new HashMap<>();
+
+    /** Counts of work done by the last search of each AI, indexed by
+     *  color. */
+    private final SearchStats[] _stats = new SearchStats[Side.values().length];
+
     /** Current players, indexed by color (RED, BLUE). */
     private final Player[] _players = new Player[Side.values().length];
 
@@ -0,0 +1,274 @@
+package jump61;
+
+import java.util.HashMap;
+
+/** Precomputed adjacency information for square boards of one size,
+ *  shared by all Boards of that size.  Neighbors are kept in compressed
+ *  sparse row form: the neighbors of square #N are
+ *  neighbors()[start()[N]] through neighbors()[start()[N + 1] - 1], in
+ *  the order up, right, down, left.  The capacity of a square (the number
+ *  of spots it can hold before jumping) is its number of neighbors.
+ *
+ *  For large boards (more than Defaults.MAX_BOARD_SIZE on a side), the
+ *  tables would cost far more memory than the board itself, so none are
+ *  built: start(), neighbors() and capacity() return null, and clients
+ *  use the computing methods capacity(N) and neighbors(N, OUT) instead.
+ *
+ *  A Geometry also supplies the Zobrist keys used to hash Boards: one
+ *  pseudo-random 64-bit key for each combination of square and packed
+ *  square code, tabulated for normal boards and computed on demand (with
+ *  identical values) for large ones.
+ *
+ *  Finally, a Geometry describes the 8 symmetries of the board (the
+ *  rotations and reflections of the square), numbered 0 (the identity)
+ *  to SYMMETRIES - 1, by giving the image of each square under each.
+ *  @author Ryan Shih
+ */
+class Geometry {
+
+    /** Tables for boards with SIZE squares on a side. */
+    private Geometry(int size) {
+        int numSquares = size * size;
+        _size = size;
+        if (size > Defaults.MAX_BOARD_SIZE) {
+            _start = _neighbors = null;
+            _capacity = null;
+            _zobrist = null;
+            _images = null;
+            return;
+        }
+        _start = new int[numSquares + 1];
+        _capacity = new byte[numSquares];
+        int[] nbrs = new int[4 * numSquares];
+        int k = 0;
+        for (int n = 0; n < numSquares; n += 1) {
+            _start[n] = k;
+            _capacity[n] = (byte) computeNeighbors(n, nbrs, k);
+            k += _capacity[n];
+        }
+        _start[numSquares] = k;
+        _neighbors = new int[k];
+        System.arraycopy(nbrs, 0, _neighbors, 0, k);
+        _zobrist = new long[numSquares * CODES];
+        for (int i = 0; i < _zobrist.length; i += 1) {
+            _zobrist[i] = zobristKey(i);
+        }
+        _images = new int[SYMMETRIES][numSquares];
+        for (int t = 0; t < SYMMETRIES; t += 1) {
+            for (int n = 0; n < numSquares; n += 1) {
+                _images[t][n] = computeImage(t, n);
+            }
+        }
+    }
+
+    /** Return the (shared) tables for boards with SIZE squares on a
+     *  side, creating them on first use. */
+    static synchronized Geometry of(int size) {
+        Geometry result = _all.get(size);
+        if (result == null) {
+            result = new Geometry(size);
+            _all.put(size, result);
+        }
+        return result;
+    }
+
+    /** Store the neighbors of square #N into OUT, starting at OUT[K], in
+     *  the order up, right, down, left.  Returns the number stored. */
+    private int computeNeighbors(int n, int[] out, int k) {
+        int size = _size;
+        int r = n / size, c = n - r * size;
+        int k0 = k;
+        if (r > 0) {
+            out[k] = n - size;
+            k += 1;
+        }
+        if (c < size - 1) {
+            out[k] = n + 1;
+            k += 1;
+        }
+        if (r < size - 1) {
+            out[k] = n + size;
+            k += 1;
+        }
+        if (c > 0) {
+            out[k] = n - 1;
+            k += 1;
+        }
+        return k - k0;
+    }
+
+    /** Store the neighbors of square #N into OUT[0 .. 3], in the order
+     *  up, right, down, left, and return how many there are (which is
+     *  also the capacity of #N). */
+    int neighbors(int n, int[] out) {
+        if (_start != null) {
+            int k0 = _start[n], count = _start[n + 1] - k0;
+            System.arraycopy(_neighbors, k0, out, 0, count);
+            return count;
+        }
+        return computeNeighbors(n, out, 0);
+    }
+
+    /** Return the capacity of square #N. */
+    int capacity(int n) {
+        if (_capacity != null) {
+            return _capacity[n];
+        }
+        int size = _size;
+        int r = n / size, c = n - r * size;
+        int cap = 4;
+        if (r == 0 || r == size - 1) {
+            cap -= 1;
+        }
+        if (c == 0 || c == size - 1) {
+            cap -= 1;
+        }
+        return cap;
+    }
+
+    /** Return the image of square #N under symmetry T. */
+    int image(int t, int n) {
+        if (_images != null) {
+            return _images[t][n];
+        }
+        return computeImage(t, n);
+    }
+
+    /** Return the images of all squares under symmetry T (see image),
+     *  or null for large boards. */
+    int[] images(int t) {
+        return _images == null ? null : _images[t];
+    }
+
+    /** Return the symmetry that undoes symmetry T. */
+    static int inverse(int t) {
+        return INVERSES[t];
+    }
+
+    /** Return the image of square #N under symmetry T: the identity, the
+     *  rotations by 90, 180, and 270 degrees, and the reflections left to
+     *  right, top to bottom, and about the two diagonals. */
+    private int computeImage(int t, int n) {
+        int last = _size - 1;
+        int r = n / _size, c = n - r * _size;
+        int r1, c1;
+        switch (t) {
+        case 0:
+            r1 = r;
+            c1 = c;
+            break;
+        case 1:
+            r1 = c;
+            c1 = last - r;
+            break;
+        case 2:
+            r1 = last - r;
+            c1 = last - c;
+            break;
+        case 3:
+            r1 = last - c;
+            c1 = r;
+            break;
+        case 4:
+            r1 = r;
+            c1 = last - c;
+            break;
+        case 5:
+            r1 = last - r;
+            c1 = c;
+            break;
+        case 6:
+            r1 = c;
+            c1 = r;
+            break;
+        default:
+            r1 = last - c;
+            c1 = last - r;
+            break;
+        }
+        return r1 * _size + c1;
+    }
+
+    /** Return the Zobrist key for square #N holding packed code CODE
+     *  (0 <= CODE < CODES). */
+    long zobrist(int n, int code) {
+        if (_zobrist != null) {
+            return _zobrist[n * CODES + code];
+        }
+        return zobristKey(n * CODES + code);
+    }
+
+    /** Return the Zobrist keys for all squares and codes, with the key for
+     *  square #N and code C at index N * CODES + C, or null for large
+     *  boards. */
+    long[] zobrist() {
+        return _zobrist;
+    }
+
+    /** Return the Zobrist key with index I (see zobrist(N, CODE)).  This
+     *  is the SplitMix64 sequence, which is cheap to compute at any
+     *  index. */
+    private static long zobristKey(long i) {
+        long z = ZOBRIST_SEED + (i + 1) * 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Return true iff I have precomputed tables (that is, start(),
+     *  neighbors() and capacity() are not null). */
+    boolean tabulated() {
+        return _start != null;
+    }
+
+    /** Return the number of squares on a side. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the offsets into neighbors() of each square's neighbor list,
+     *  plus a final entry marking the end of the last list, or null for
+     *  large boards. */
+    int[] start() {
+        return _start;
+    }
+
+    /** Return the concatenated neighbor lists of all squares, or null for
+     *  large boards. */
+    int[] neighbors() {
+        return _neighbors;
+    }
+
+    /** Return the capacity of each square, or null for large boards. */
+    byte[] capacity() {
+        return _capacity;
+    }
+
+    /** Number of symmetries of a square board. */
+    static final int SYMMETRIES = 8;
+
+    /** The inverses of the symmetries. */
+    private static final int[] INVERSES = { 0, 3, 2, 1, 4, 5, 6, 7 };
+
+    /** Number of distinct packed square codes. */
+    static final int CODES = 256;
+
+    /** Seed for the Zobrist keys. */
+    private static final long ZOBRIST_SEED = 0x6a756d7036314cL;
+
+    /** Number of squares on a side. */
+    private final int _size;
+    /** Offsets of neighbor lists in _neighbors. */
+    private final int[] _start;
+    /** Neighbor lists. */
+    private final int[] _neighbors;
+    /** Capacities of squares. */
+    private final byte[] _capacity;
+    /** Zobrist keys. */
+    private final long[] _zobrist;
+    /** Images of squares under each symmetry. */
+    private final int[][] _images;
+
+    /** Tables created so far, indexed by board size. */
+    private static HashMap<Integer, Geometry> _all = new HashMap<>();
+}
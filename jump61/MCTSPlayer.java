@@ -0,0 +1,259 @@
+package jump61;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** An automated Player that chooses moves by Monte Carlo tree search.
+ *  Each iteration descends the search tree from the current position,
+ *  choosing children by the UCT rule, expands the leaf it reaches, plays
+ *  the game out from there with quick, nearly random moves, and credits
+ *  the result to each node on the path.  When the time allowed for the
+ *  move runs out, the most-visited move from the root is chosen.
+ *
+ *  The tree is kept in parallel primitive arrays indexed by node number
+ *  (node 0 is the root), with the children of each node stored
+ *  consecutively, so that growing it allocates no per-node objects.
+ *  Searching works on a private copy of the game board, returning it to
+ *  the root position after each iteration by undoing moves.
+ *  @author Ryan Shih
+ */
+class MCTSPlayer extends Player {
+
+    /** A new player of GAME initially COLOR that chooses moves by Monte
+     *  Carlo tree search.  SEED provides a random-number seed used for
+     *  choosing moves. */
+    MCTSPlayer(Game game, Side color, long seed) {
+        super(game, color);
+        _random = new Random(seed);
+    }
+
+    @Override
+    String getMove() {
+        Board board = getGame().getBoard();
+        assert getSide() == board.whoseMove();
+        long limit = System.nanoTime() + getGame().moveTime() * 1000000L;
+        int choice = searchForMove(board, board.whoseMove(), limit);
+        getGame().reportMove(board.row(choice), board.col(choice));
+        return String.format("%d %d", board.row(choice), board.col(choice));
+    }
+
+    /** Return a move for SIDE from BOARD, found by running iterations of
+     *  Monte Carlo tree search until the time given by System.nanoTime()
+     *  passes LIMIT (always running at least one).  Assumes the game is
+     *  not over. */
+    int searchForMove(Board board, Side side, long limit) {
+        Board work = new Board(board);
+        _numNodes = 1;
+        _parent[0] = -1;
+        _firstChild[0] = -1;
+        _numChildren[0] = 0;
+        _visits[0] = 0;
+        _wins[0] = 0;
+        _playouts = 0;
+        do {
+            for (int k = 0; k < TIME_CHECK_INTERVAL; k += 1) {
+                iterate(work, side);
+            }
+        } while (System.nanoTime() - limit < 0);
+        Utils.debug(1, "%d playouts, %d nodes", _playouts, _numNodes);
+        int best = -1;
+        for (int c = _firstChild[0]; c < _firstChild[0] + _numChildren[0];
+             c += 1) {
+            if (best == -1 || _visits[c] > _visits[best]) {
+                best = c;
+            }
+        }
+        return _move[best];
+    }
+
+    /** Return the number of playouts made by the last search. */
+    int playouts() {
+        return _playouts;
+    }
+
+    /** Perform one iteration of search on BOARD, whose position is that
+     *  of the root, with SIDE to move, and restore BOARD afterwards. */
+    private void iterate(Board board, Side side) {
+        int node = 0;
+        int moves = 0;
+        while (_firstChild[node] >= 0 && _numChildren[node] > 0) {
+            node = select(node);
+            board.addSpot(side, _move[node]);
+            side = side.opposite();
+            moves += 1;
+        }
+        if (board.getWinner() == null && (_visits[node] > 0 || node == 0)) {
+            expand(node, board, side);
+            if (_numChildren[node] > 0) {
+                node = _firstChild[node];
+                board.addSpot(side, _move[node]);
+                side = side.opposite();
+                moves += 1;
+            }
+        }
+        Side winner = board.getWinner();
+        if (winner == null) {
+            winner = playout(board, side);
+        }
+        _playouts += 1;
+        Side mover = side.opposite();
+        for (int n = node; n >= 0; n = _parent[n]) {
+            _visits[n] += 1;
+            if (mover == winner) {
+                _wins[n] += 1;
+            }
+            mover = mover.opposite();
+        }
+        for (int k = 0; k < moves; k += 1) {
+            board.undo();
+        }
+    }
+
+    /** Return the child of NODE with the highest UCT value.  Unvisited
+     *  children are taken first. */
+    private int select(int node) {
+        double logVisits = Math.log(_visits[node]);
+        int best = -1;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        int last = _firstChild[node] + _numChildren[node];
+        for (int c = _firstChild[node]; c < last; c += 1) {
+            if (_visits[c] == 0) {
+                return c;
+            }
+            double value = _wins[c] / _visits[c]
+                + EXPLORATION * Math.sqrt(logVisits / _visits[c]);
+            if (value > bestValue) {
+                bestValue = value;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /** Add children to NODE for each of the moves of SIDE on BOARD, in
+     *  random order.  Leaves NODE without children if the tree is
+     *  full. */
+    private void expand(int node, Board board, Side side) {
+        int numSquares = board.numSquares();
+        int first = _numNodes;
+        if (first + numSquares > MAX_NODES) {
+            _firstChild[node] = first;
+            _numChildren[node] = 0;
+            return;
+        }
+        ensureCapacity(first + numSquares);
+        if (_legal.length != numSquares) {
+            _legal = new int[numSquares];
+        }
+        int count = board.legalMoves(side, _legal);
+        for (int k = 0; k < count; k += 1) {
+            int c = first + k;
+            int j = first + _random.nextInt(k + 1);
+            _move[c] = _move[j];
+            _move[j] = _legal[k];
+            _parent[c] = node;
+            _firstChild[c] = -1;
+            _numChildren[c] = 0;
+            _visits[c] = 0;
+            _wins[c] = 0;
+        }
+        _firstChild[node] = first;
+        _numChildren[node] = count;
+        _numNodes = first + count;
+    }
+
+    /** Play the game on BOARD out to the end (or for at most
+     *  MAX_PLAYOUT_MOVES moves), starting with SIDE to move, and return
+     *  the winner, leaving BOARD as it was.  Each move is chosen among two
+     *  random legal squares, preferring one that will jump.  A game cut
+     *  short is awarded to the side with more spots. */
+    private Side playout(Board board, Side side) {
+        int numSquares = board.numSquares();
+        Side winner = null;
+        int k;
+        for (k = 0; k < MAX_PLAYOUT_MOVES && winner == null; k += 1) {
+            int n = randomMove(board, side, numSquares);
+            if (board.spots(n) < board.neighbors(n)) {
+                int other = randomMove(board, side, numSquares);
+                if (board.spots(other) >= board.neighbors(other)) {
+                    n = other;
+                }
+            }
+            board.addSpot(side, n);
+            winner = board.getWinner();
+            side = side.opposite();
+        }
+        if (winner == null) {
+            winner = board.spotsOf(side) > board.spotsOf(side.opposite())
+                ? side : side.opposite();
+        }
+        while (k > 0) {
+            board.undo();
+            k -= 1;
+        }
+        return winner;
+    }
+
+    /** Return a random square of BOARD, which has NUMSQUARES squares,
+     *  where SIDE may legally move. */
+    private int randomMove(Board board, Side side, int numSquares) {
+        int n;
+        do {
+            n = _random.nextInt(numSquares);
+        } while (!board.isLegal(side, n));
+        return n;
+    }
+
+    /** Make sure the tree arrays can hold at least SIZE nodes. */
+    private void ensureCapacity(int size) {
+        if (size > _move.length) {
+            int length = Math.max(size, 2 * _move.length);
+            _move = Arrays.copyOf(_move, length);
+            _parent = Arrays.copyOf(_parent, length);
+            _firstChild = Arrays.copyOf(_firstChild, length);
+            _numChildren = Arrays.copyOf(_numChildren, length);
+            _visits = Arrays.copyOf(_visits, length);
+            _wins = Arrays.copyOf(_wins, length);
+        }
+    }
+
+    /** Number of iterations between checks of the clock. */
+    private static final int TIME_CHECK_INTERVAL = 16;
+
+    /** The exploration constant of the UCT rule. */
+    private static final double EXPLORATION = Math.sqrt(2);
+
+    /** Largest number of nodes in the tree. */
+    private static final int MAX_NODES = 1 << 24;
+
+    /** Longest playout, in moves. */
+    private static final int MAX_PLAYOUT_MOVES = 1000;
+
+    /** Initial capacity of the tree arrays. */
+    private static final int INITIAL_NODES = 1 << 12;
+
+    /** For each node, the move (square number) leading to it from its
+     *  parent. */
+    private int[] _move = new int[INITIAL_NODES];
+    /** For each node, its parent, or -1 for the root. */
+    private int[] _parent = new int[INITIAL_NODES];
+    /** For each node, the number of its first child, or -1 if it has not
+     *  been expanded. */
+    private int[] _firstChild = new int[INITIAL_NODES];
+    /** For each node, the number of its children. */
+    private int[] _numChildren = new int[INITIAL_NODES];
+    /** For each node, the number of playouts through it. */
+    private int[] _visits = new int[INITIAL_NODES];
+    /** For each node, the number of those playouts won by the player who
+     *  made its move. */
+    private double[] _wins = new double[INITIAL_NODES];
+    /** Space for the legal moves from a node being expanded. */
+    private int[] _legal = new int[0];
+    /** Number of nodes in use. */
+    private int _numNodes;
+    /** Number of playouts made by the current search. */
+    private int _playouts;
+
+    /** A random-number generator used for move selection. */
+    private Random _random;
+}
@@ -5,6 +5,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.List;
 
 import static jump61.Utils.*;
 
@@ -24,7 +25,9 @@ public class Main {
     public static void main(String[] args0) {
         CommandArgs args =
             new CommandArgs("--display{0,1} --strict{0,1} --version{0,1}"
-                            + " --debug=(\\d+){0,1} --log --=(.*){0,}", args0);
+                            + " --debug=(\\d+){0,1} --book=(.+){0,}"
+                            + " --tablebase=(.+){0,} --log"
+                            + " --=(.*){0,}", args0);
 
         if (!args.ok()) {
             usage();
@@ -46,6 +49,7 @@ public class Main {
         if (args.contains("--display")) {
             Display display = new Display("Jump61");
             game = new Game(display, display, display, log);
+            addBooks(game, args.get("--book"), args.get("--tablebase"));
             game.play();
         } else {
             TextSource source;
@@ -68,10 +72,33 @@ public class Main {
             }
             game = new Game(new TextSource(inReaders),
                 (b) -> { }, new TextReporter(), log);
+            addBooks(game, args.get("--book"), args.get("--tablebase"));
             System.exit(game.play());
         }
     }
 
+    /** Make the opening books in the files named in BOOKS and the
+     *  tablebases in those named in TABLEBASES available to GAME's AIs,
+     *  exiting with an error message if one cannot be read. */
+    private static void addBooks(Game game, List<String> books,
+                                 List<String> tablebases) {
+        String name = null;
+        try {
+            for (String book : books) {
+                name = book;
+                game.addBook(name);
+            }
+            for (String tablebase : tablebases) {
+                name = tablebase;
+                game.addTablebase(name);
+            }
+        } catch (IOException excp) {
+            System.err.printf("Could not read %s: %s%n", name,
+                              excp.getMessage());
+            System.exit(1);
+        }
+    }
+
     /** Return true if in strict mode, where user errors are not allowed and
      *  cause error exit from the program. */
     static boolean strict() {
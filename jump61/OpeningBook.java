@@ -0,0 +1,154 @@
+package jump61;
+
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/** A read-only table of precomputed best moves for positions on boards of
+ *  one size, kept in a file that is memory-mapped rather than read, so
+ *  that opening it takes no parsing and no heap space.  Positions are
+ *  identified by canonical Zobrist key (Board.zobrist(T) for T =
+ *  Board.canonicalSymmetry()), and moves are given in the canonical
+ *  orientation, so one entry serves every rotation and reflection of a
+ *  position.
+ *
+ *  The file starts with a header of four big-endian ints: MAGIC, the
+ *  format VERSION, the board size, and the number of entries.  The
+ *  entries follow, sorted by key, each consisting of the long key, the
+ *  int move (a square number), and the int score found for it (from the
+ *  point of view of the player to move), for ENTRY_BYTES bytes in all.
+ *  @author Ryan Shih
+ */
+class OpeningBook {
+
+    /** A book whose file contents are DATA. */
+    private OpeningBook(ByteBuffer data) throws IOException {
+        if (data.capacity() < HEADER_BYTES || data.getInt(0) != MAGIC
+            || data.getInt(4) != VERSION) {
+            throw new IOException("not an opening book");
+        }
+        _data = data;
+        _size = data.getInt(8);
+        _entries = data.getInt(12);
+        if (data.capacity() != HEADER_BYTES + _entries * ENTRY_BYTES) {
+            throw new IOException("opening book has the wrong length");
+        }
+    }
+
+    /** Return the book in file FILENAME, which must have been written by
+     *  write. */
+    static OpeningBook open(String fileName) throws IOException {
+        try (FileChannel channel =
+             FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY,
+                                               0, channel.size()));
+        }
+    }
+
+    /** Write a book for boards of SIZE squares on a side to FILENAME,
+     *  containing, for each K < KEYS.length, the position with canonical
+     *  key KEYS[K], its best move MOVES[K] (in canonical orientation), and
+     *  its score SCORES[K].  The keys must be distinct. */
+    static void write(String fileName, int size, long[] keys, int[] moves,
+                      int[] scores) throws IOException {
+        Integer[] order = new Integer[keys.length];
+        for (int k = 0; k < keys.length; k += 1) {
+            order[k] = k;
+        }
+        Arrays.sort(order, (i, j) -> Long.compare(keys[i], keys[j]));
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream(
+                 new FileOutputStream(fileName)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(size);
+            out.writeInt(keys.length);
+            for (int k : order) {
+                out.writeLong(keys[k]);
+                out.writeInt(moves[k]);
+                out.writeInt(scores[k]);
+            }
+        }
+    }
+
+    /** Return the number of squares on a side of the boards I cover. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the number of positions I contain. */
+    int entries() {
+        return _entries;
+    }
+
+    /** Return the index of the entry for the position with canonical
+     *  key KEY, or -1 if there is none. */
+    int find(long key) {
+        int lo = 0, hi = _entries - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long midKey = _data.getLong(offset(mid));
+            if (midKey < key) {
+                lo = mid + 1;
+            } else if (midKey > key) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Return the move (in canonical orientation) of entry #K. */
+    int move(int k) {
+        return _data.getInt(offset(k) + MOVE_OFFSET);
+    }
+
+    /** Return the score of entry #K. */
+    int score(int k) {
+        return _data.getInt(offset(k) + SCORE_OFFSET);
+    }
+
+    /** Return the move for BOARD, a position of my size, or -1 if I do
+     *  not contain BOARD. */
+    int move(Board board) {
+        if (board.size() != _size) {
+            return -1;
+        }
+        int symmetry = board.canonicalSymmetry();
+        int k = find(board.zobrist(symmetry));
+        if (k < 0) {
+            return -1;
+        }
+        return board.geometry().image(Geometry.inverse(symmetry), move(k));
+    }
+
+    /** Return the byte offset of entry #K. */
+    private static int offset(int k) {
+        return HEADER_BYTES + k * ENTRY_BYTES;
+    }
+
+    /** Identifies opening book files ("J61B"). */
+    private static final int MAGIC = 0x4a363142;
+    /** Version of the file format. */
+    private static final int VERSION = 1;
+    /** Size of the header, in bytes. */
+    private static final int HEADER_BYTES = 16;
+    /** Size of an entry, in bytes. */
+    private static final int ENTRY_BYTES = 16;
+    /** Offsets within an entry of the move and score. */
+    private static final int MOVE_OFFSET = 8, SCORE_OFFSET = 12;
+
+    /** The contents of my file. */
+    private final ByteBuffer _data;
+    /** Board size. */
+    private final int _size;
+    /** Number of entries. */
+    private final int _entries;
+}
@@ -0,0 +1,269 @@
+package jump61;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Resolves the cascade set off by one move on a very large Board,
+ *  processing it in wavefront generations.  In each generation, every
+ *  square that is over-full at the start of the generation jumps as many
+ *  times as it can.  The board is divided into tiles (bands of rows).
+ *  The jumps in each tile are worked out in parallel on a ForkJoinPool;
+ *  spots spilling into neighboring tiles are set aside and merged in tile
+ *  order afterwards, and the new square contents are then written back in
+ *  a fixed order, so that the result never depends on thread timing.
+ *
+ *  Because a cascade that runs to completion always ends in the same
+ *  position, regardless of the order in which squares jump, this gives
+ *  the same result as Board's sequential resolver.  The one exception is
+ *  a cascade cut short because the mover has won, which depends on the
+ *  order of jumps.  When a generation ends in a win, the whole cascade is
+ *  therefore rolled back and replayed by the sequential resolver, so the
+ *  final board is always identical.
+ *  @author Ryan Shih
+ */
+class ParallelCascade {
+
+    /** Smallest number of squares on a side of a Board for which Boards
+     *  use a ParallelCascade. */
+    static final int MIN_SIZE = 256;
+
+    /** Smallest generation (in over-full squares) that is split among
+     *  threads.  Smaller generations are handled on the calling thread. */
+    static final int MIN_PARALLEL_FRONTIER = 2048;
+
+    /** Number of tiles per available thread. */
+    private static final int TILES_PER_THREAD = 4;
+
+    /** Initial length of per-tile lists. */
+    private static final int LIST_INIT = 64;
+
+    /** A resolver for cascades on BOARD, using POOL for parallel work. */
+    ParallelCascade(Board board, ForkJoinPool pool) {
+        _board = board;
+        _pool = pool;
+        _size = board.size();
+        int tiles = TILES_PER_THREAD * pool.getParallelism();
+        _tileRows = Math.max(1, (_size + tiles - 1) / tiles);
+        _numTiles = (_size + _tileRows - 1) / _tileRows;
+        _inflow = new int[_size * _size];
+        _frontier = newLists();
+        _frontierSize = new int[_numTiles];
+        _next = newLists();
+        _nextSize = new int[_numTiles];
+        _touched = newLists();
+        _touchedSize = new int[_numTiles];
+        _outbox = newLists();
+        _outboxSize = new int[_numTiles];
+        _scratch = new int[_numTiles][4];
+    }
+
+    /** A resolver for cascades on BOARD, using the common ForkJoinPool. */
+    ParallelCascade(Board board) {
+        this(board, ForkJoinPool.commonPool());
+    }
+
+    /** Return the number of squares on a side of the Board I handle. */
+    int size() {
+        return _size;
+    }
+
+    /** Do all jumping on my Board, assuming that initially, S is the only
+     *  square that might be over-full. */
+    void resolve(int s) {
+        Board board = _board;
+        Side side = board.side(s);
+        int mark = board.mark();
+        int total = 1;
+        add(_frontier, _frontierSize, tileOf(s), s);
+        while (total > 0) {
+            if (total >= MIN_PARALLEL_FRONTIER) {
+                _pool.invoke(new Scatter(0, _numTiles));
+            } else {
+                for (int t = 0; t < _numTiles; t += 1) {
+                    scatter(t);
+                }
+            }
+            merge();
+            total = apply(side);
+            if (board.numOfSide(side) == board.numSquares()) {
+                for (int t = 0; t < _numTiles; t += 1) {
+                    _frontierSize[t] = 0;
+                }
+                board.rollback(mark);
+                board.sequentialJump(s);
+                return;
+            }
+        }
+    }
+
+    /** Work out the jumps of the over-full squares in tile T, recording
+     *  the spots they send to squares of T in _inflow and those they send
+     *  to other tiles in T's outbox.  Reads, but does not modify, the
+     *  Board, and writes only data belonging to tile T. */
+    private void scatter(int t) {
+        Board board = _board;
+        int[] frontier = _frontier[t];
+        int[] nbrs = _scratch[t];
+        for (int i = 0; i < _frontierSize[t]; i += 1) {
+            int sq = frontier[i];
+            int cap = board.neighbors(sq);
+            int jumps = (board.spots(sq) - 1) / cap;
+            touch(t, sq, 0);
+            int count = board.geometry().neighbors(sq, nbrs);
+            for (int k = 0; k < count; k += 1) {
+                int neighbor = nbrs[k];
+                if (tileOf(neighbor) == t) {
+                    touch(t, neighbor, jumps);
+                } else {
+                    add(_outbox, _outboxSize, t, neighbor);
+                    add(_outbox, _outboxSize, t, jumps);
+                }
+            }
+        }
+        _frontierSize[t] = 0;
+    }
+
+    /** Add the spots that each tile sent to other tiles to _inflow, in
+     *  tile order. */
+    private void merge() {
+        for (int t = 0; t < _numTiles; t += 1) {
+            int[] outbox = _outbox[t];
+            for (int i = 0; i < _outboxSize[t]; i += 2) {
+                touch(tileOf(outbox[i]), outbox[i], outbox[i + 1]);
+            }
+            _outboxSize[t] = 0;
+        }
+    }
+
+    /** Write the new contents of all squares touched in this generation to
+     *  my Board, giving them to SIDE, and collect the squares that are
+     *  now over-full as the next generation.  Returns the size of the next
+     *  generation. */
+    private int apply(Side side) {
+        Board board = _board;
+        int total = 0;
+        for (int t = 0; t < _numTiles; t += 1) {
+            int[] touched = _touched[t];
+            for (int i = 0; i < _touchedSize[t]; i += 1) {
+                int sq = touched[i];
+                int cap = board.neighbors(sq);
+                int spots = board.spots(sq);
+                if (spots > cap) {
+                    spots -= (spots - 1) / cap * cap;
+                }
+                spots += _inflow[sq] - 1;
+                _inflow[sq] = 0;
+                board.put(sq, Board.code(side, spots));
+                if (spots > cap) {
+                    add(_next, _nextSize, t, sq);
+                    total += 1;
+                }
+            }
+            _touchedSize[t] = 0;
+        }
+        int[][] lists = _frontier;
+        _frontier = _next;
+        _next = lists;
+        int[] sizes = _frontierSize;
+        _frontierSize = _nextSize;
+        _nextSize = sizes;
+        return total;
+    }
+
+    /** Record that square N, in tile T, receives SPOTS more spots in this
+     *  generation. */
+    private void touch(int t, int n, int spots) {
+        if (_inflow[n] == 0) {
+            add(_touched, _touchedSize, t, n);
+            _inflow[n] = 1;
+        }
+        _inflow[n] += spots;
+    }
+
+    /** Return the tile containing square #N. */
+    private int tileOf(int n) {
+        return n / _size / _tileRows;
+    }
+
+    /** Return a new set of empty per-tile lists. */
+    private int[][] newLists() {
+        int[][] result = new int[_numTiles][];
+        for (int t = 0; t < _numTiles; t += 1) {
+            result[t] = new int[LIST_INIT];
+        }
+        return result;
+    }
+
+    /** Append VALUE to list LISTS[T], whose length is SIZES[T], growing it
+     *  if necessary. */
+    private static void add(int[][] lists, int[] sizes, int t, int value) {
+        if (sizes[t] == lists[t].length) {
+            lists[t] = Arrays.copyOf(lists[t], 2 * lists[t].length);
+        }
+        lists[t][sizes[t]] = value;
+        sizes[t] += 1;
+    }
+
+    /** Scatters tiles LO .. HI-1, splitting the work among threads. */
+    private class Scatter extends RecursiveAction {
+
+        /** A task scattering tiles LO .. HI-1. */
+        Scatter(int lo, int hi) {
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo == 1) {
+                scatter(_lo);
+            } else {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Scatter(_lo, mid), new Scatter(mid, _hi));
+            }
+        }
+
+        /** Serialization version (tasks are never serialized, but
+         *  RecursiveAction is Serializable). */
+        private static final long serialVersionUID = 1L;
+
+        /** First tile handled. */
+        private final int _lo;
+        /** Limit of tiles handled. */
+        private final int _hi;
+    }
+
+    /** The Board whose cascades I resolve. */
+    private final Board _board;
+    /** Pool for parallel work. */
+    private final ForkJoinPool _pool;
+    /** Number of squares on a side of _board. */
+    private final int _size;
+    /** Number of rows in each tile. */
+    private final int _tileRows;
+    /** Number of tiles. */
+    private final int _numTiles;
+    /** For each square touched in the current generation, 1 + the number
+     *  of spots it receives; 0 for untouched squares. */
+    private final int[] _inflow;
+    /** The over-full squares of the current generation, by tile. */
+    private int[][] _frontier;
+    /** Lengths of the lists in _frontier. */
+    private int[] _frontierSize;
+    /** The over-full squares of the next generation, by tile. */
+    private int[][] _next;
+    /** Lengths of the lists in _next. */
+    private int[] _nextSize;
+    /** Squares touched in the current generation, by tile. */
+    private final int[][] _touched;
+    /** Lengths of the lists in _touched. */
+    private final int[] _touchedSize;
+    /** Spots sent to other tiles in the current generation, as (square,
+     *  spots) pairs, by sending tile. */
+    private final int[][] _outbox;
+    /** Lengths of the lists in _outbox. */
+    private final int[] _outboxSize;
+    /** Per-tile scratch space for the neighbors of one square. */
+    private final int[][] _scratch;
+}
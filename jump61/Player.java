@@ -36,6 +36,23 @@ abstract class Player {
      *  proper color and that the game is not yet won. */
     abstract String getMove();
 
+    /** Start thinking in the background while my opponent chooses a
+     *  move, until stopPondering is called.  By default, does
+     *  nothing. */
+    void startPondering() {
+    }
+
+    /** Stop any thinking started by startPondering, and return when it
+     *  has stopped. */
+    void stopPondering() {
+    }
+
+    /** Release any threads or large tables I hold, once I have been
+     *  replaced and will make no more moves.  By default, does
+     *  nothing. */
+    void close() {
+    }
+
     /** My current color. */
     private Side _color;
     /** The game I'm in. */
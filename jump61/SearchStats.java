@@ -0,0 +1,178 @@
+package jump61;
+
+/** Counts of the work done by an AI search, used to tune searches.  Each
+ *  thread of a search keeps its own counts, which are added together when
+ *  the search is over, so counting costs only an increment.
+ *  @author Ryan Shih
+ */
+class SearchStats {
+
+    /** Set all counts to 0. */
+    void clear() {
+        _nodes = _quiescenceNodes = _cutoffs = _firstMoveCutoffs = 0;
+        _probes = _hits = _quiescenceSearches = 0;
+        _depth = _largestQuiescence = _quiescenceExtension = 0;
+        _time = 0;
+    }
+
+    /** Add the counts in OTHER to mine. */
+    void add(SearchStats other) {
+        _nodes += other._nodes;
+        _quiescenceNodes += other._quiescenceNodes;
+        _cutoffs += other._cutoffs;
+        _firstMoveCutoffs += other._firstMoveCutoffs;
+        _probes += other._probes;
+        _hits += other._hits;
+        _quiescenceSearches += other._quiescenceSearches;
+        _largestQuiescence =
+            Math.max(_largestQuiescence, other._largestQuiescence);
+        _quiescenceExtension =
+            Math.max(_quiescenceExtension, other._quiescenceExtension);
+    }
+
+    /** Count N positions visited. */
+    void addNodes(long n) {
+        _nodes += n;
+    }
+
+    /** Count a position visited by quiescence search, EXTENSION moves
+     *  past the depth of the main search. */
+    void quiescenceNode(int extension) {
+        _quiescenceNodes += 1;
+        _quiescenceExtension = Math.max(_quiescenceExtension, extension);
+    }
+
+    /** Count a quiescence search, which visited NODES positions. */
+    void quiescenceSearch(int nodes) {
+        _quiescenceSearches += 1;
+        _largestQuiescence = Math.max(_largestQuiescence, nodes);
+    }
+
+    /** Count a beta cutoff, caused by the first move tried iff
+     *  FIRSTMOVE. */
+    void cutoff(boolean firstMove) {
+        _cutoffs += 1;
+        if (firstMove) {
+            _firstMoveCutoffs += 1;
+        }
+    }
+
+    /** Count a transposition table probe, which found an entry iff
+     *  HIT. */
+    void probe(boolean hit) {
+        _probes += 1;
+        if (hit) {
+            _hits += 1;
+        }
+    }
+
+    /** Record that the search completed DEPTH iterations and took NANOS
+     *  nanoseconds. */
+    void finish(int depth, long nanos) {
+        _depth = depth;
+        _time = nanos;
+    }
+
+    /** Return the number of positions visited. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the number of positions visited by quiescence search. */
+    long quiescenceNodes() {
+        return _quiescenceNodes;
+    }
+
+    /** Return the number of quiescence searches. */
+    long quiescenceSearches() {
+        return _quiescenceSearches;
+    }
+
+    /** Return the largest number of positions visited by one quiescence
+     *  search. */
+    int largestQuiescence() {
+        return _largestQuiescence;
+    }
+
+    /** Return the largest number of moves by which quiescence search
+     *  extended a line. */
+    int quiescenceExtension() {
+        return _quiescenceExtension;
+    }
+
+    /** Return the number of beta cutoffs. */
+    long cutoffs() {
+        return _cutoffs;
+    }
+
+    /** Return the number of beta cutoffs caused by the first move
+     *  tried. */
+    long firstMoveCutoffs() {
+        return _firstMoveCutoffs;
+    }
+
+    /** Return the number of transposition table probes. */
+    long probes() {
+        return _probes;
+    }
+
+    /** Return the number of transposition table probes that found an
+     *  entry. */
+    long hits() {
+        return _hits;
+    }
+
+    /** Return the deepest iteration completed. */
+    int depth() {
+        return _depth;
+    }
+
+    /** Return the time taken, in nanoseconds. */
+    long time() {
+        return _time;
+    }
+
+    /** Return the number of positions visited per second. */
+    long nodesPerSecond() {
+        return _time == 0 ? 0 : (long) (_nodes * 1e9 / _time);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("depth %d, %d nodes in %.3f s (%d/s, %.1f%% "
+                             + "quiescence), %d cutoffs (%.1f%% on first "
+                             + "move), table hits %.1f%% of %d probes",
+                             _depth, _nodes, _time / 1e9, nodesPerSecond(),
+                             percent(_quiescenceNodes, _nodes), _cutoffs,
+                             percent(_firstMoveCutoffs, _cutoffs),
+                             percent(_hits, _probes), _probes);
+    }
+
+    /** Return PART as a percentage of WHOLE (0 if WHOLE is 0). */
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0 : 100.0 * part / whole;
+    }
+
+    /** Positions visited. */
+    private long _nodes;
+    /** Positions visited by quiescence search. */
+    private long _quiescenceNodes;
+    /** Quiescence searches. */
+    private long _quiescenceSearches;
+    /** Most positions visited by one quiescence search. */
+    private int _largestQuiescence;
+    /** Most moves by which quiescence search extended a line. */
+    private int _quiescenceExtension;
+    /** Beta cutoffs. */
+    private long _cutoffs;
+    /** Beta cutoffs caused by the first move tried. */
+    private long _firstMoveCutoffs;
+    /** Transposition table probes. */
+    private long _probes;
+    /** Transposition table probes that found an entry. */
+    private long _hits;
+    /** Deepest iteration completed. */
+    private int _depth;
+    /** Time taken, in nanoseconds. */
+    private long _time;
+}
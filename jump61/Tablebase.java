@@ -0,0 +1,249 @@
+package jump61;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static jump61.Side.*;
+
+/** A complete solution of the game on boards of one (small) size, kept in
+ *  a memory-mapped file written by TablebaseBuilder.  For every position
+ *  that can arise from the empty board, it gives the number of moves
+ *  left in the game with perfect play by both sides: the winner heads for
+ *  the quickest win and the loser for the longest loss.  Since the
+ *  player who moves last wins, a position is won for the player to move
+ *  iff that distance is odd.
+ *
+ *  Positions are numbered by their contents, square by square (see
+ *  index), and the distances are packed into consecutive fields of a
+ *  fixed number of bits, 0 marking positions that cannot arise or whose
+ *  game is over.  The file starts with a header of five big-endian ints:
+ *  MAGIC, the format VERSION, the board size, the bits per field, and
+ *  the number of positions, followed by the fields, packed into longs
+ *  from their most significant bits down.
+ *  @author Ryan Shih
+ */
+class Tablebase {
+
+    /** A tablebase whose file contents are DATA. */
+    private Tablebase(ByteBuffer data) throws IOException {
+        if (data.capacity() < HEADER_BYTES || data.getInt(0) != MAGIC
+            || data.getInt(4) != VERSION) {
+            throw new IOException("not a tablebase");
+        }
+        _data = data;
+        _size = data.getInt(8);
+        _bits = data.getInt(12);
+        _positions = data.getInt(16);
+        if (_size < 2 || _size > Defaults.MAX_BOARD_SIZE
+            || _bits < 1 || _bits > Byte.SIZE
+            || _positions != positions(_size)
+            || data.capacity() != HEADER_BYTES
+                + Long.BYTES * words(_positions, _bits)) {
+            throw new IOException("malformed tablebase");
+        }
+    }
+
+    /** Return the tablebase in file FILENAME, which must have been
+     *  written by write. */
+    static Tablebase open(String fileName) throws IOException {
+        try (FileChannel channel =
+             FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            return new Tablebase(channel.map(FileChannel.MapMode.READ_ONLY,
+                                             0, channel.size()));
+        }
+    }
+
+    /** Write a tablebase for boards of SIZE squares on a side to
+     *  FILENAME, in which position #I has distance DISTANCES[I], using
+     *  BITS bits for each. */
+    static void write(String fileName, int size, byte[] distances,
+                      int bits) throws IOException {
+        long[] words = new long[words(distances.length, bits)];
+        long bit = 0;
+        for (byte distance : distances) {
+            int shift = Long.SIZE - bits - (int) (bit & (Long.SIZE - 1));
+            int w = (int) (bit >>> WORD_SHIFT);
+            if (shift >= 0) {
+                words[w] |= (long) distance << shift;
+            } else {
+                words[w] |= (long) distance >>> -shift;
+                words[w + 1] |= (long) distance << (Long.SIZE + shift);
+            }
+            bit += bits;
+        }
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream(
+                 new FileOutputStream(fileName)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(size);
+            out.writeInt(bits);
+            out.writeInt(distances.length);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        }
+    }
+
+    /** Return the number of squares on a side of the boards I cover. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the number of moves left in the game on BOARD, a board of
+     *  my size, with perfect play, or 0 if BOARD's game is over or I do
+     *  not know BOARD. */
+    int distance(Board board) {
+        if (board.size() != _size || board.getWinner() != null) {
+            return 0;
+        }
+        return distance(index(board));
+    }
+
+    /** Return the distance recorded for position #I. */
+    int distance(int i) {
+        long bit = (long) i * _bits;
+        int shift = Long.SIZE - _bits - (int) (bit & (Long.SIZE - 1));
+        int offset = HEADER_BYTES + (int) (bit >>> WORD_SHIFT) * Long.BYTES;
+        long field;
+        if (shift >= 0) {
+            field = _data.getLong(offset) >>> shift;
+        } else {
+            field = (_data.getLong(offset) << -shift)
+                | (_data.getLong(offset + Long.BYTES) >>> (Long.SIZE + shift));
+        }
+        return (int) field & ((1 << _bits) - 1);
+    }
+
+    /** Return a best move for the player to move on BOARD, a board of my
+     *  size, or -1 if I do not know BOARD or its game is over. */
+    int move(Board board) {
+        if (distance(board) == 0) {
+            return -1;
+        }
+        Board work = new Board(board);
+        Side player = work.whoseMove();
+        int[] moves = new int[work.numSquares()];
+        int count = work.legalMoves(player, moves);
+        int best = -1, bestDistance = 0;
+        for (int k = 0; k < count; k += 1) {
+            work.addSpot(player, moves[k]);
+            int d = work.getWinner() != null ? 1 : 1 + distance(index(work));
+            work.undo();
+            if (better(d, bestDistance)) {
+                best = moves[k];
+                bestDistance = d;
+            }
+        }
+        return best;
+    }
+
+    /** Return true iff a move that ends the game in D0 moves with perfect
+     *  play is better for the player making it than one that ends it in
+     *  D1 moves (or than none at all, if D1 is 0).  A win (odd distance)
+     *  is better than a loss, a quicker win than a slower one, and a
+     *  slower loss than a quicker one. */
+    static boolean better(int d0, int d1) {
+        boolean win0 = (d0 & 1) == 1, win1 = (d1 & 1) == 1;
+        if (d1 == 0 || win0 != win1) {
+            return win0 || d1 == 0;
+        }
+        return win0 ? d0 < d1 : d0 > d1;
+    }
+
+    /** Return the number of positions (reachable or not) of boards with
+     *  SIZE squares on a side: the product over squares of the number of
+     *  states each can be in (see index).  This may be very large. */
+    static long positions(int size) {
+        Geometry geometry = Geometry.of(size);
+        long result = 1;
+        for (int n = 0; n < size * size; n += 1) {
+            result *= states(geometry.capacity(n));
+            if (result > Integer.MAX_VALUE) {
+                return Long.MAX_VALUE;
+            }
+        }
+        return result;
+    }
+
+    /** Return the number of position BOARD, whose game must not be over.
+     *  A square with capacity C is in one of 2C + 1 states: 0 if it is
+     *  white, S if it holds S spots of RED, and C + S if it holds S spots
+     *  of BLUE.  The state of square #N is digit #N of the result, in a
+     *  mixed-radix notation whose digits have these ranges. */
+    static int index(Board board) {
+        Geometry geometry = board.geometry();
+        int result = 0;
+        for (int n = board.numSquares() - 1; n >= 0; n -= 1) {
+            int capacity = geometry.capacity(n);
+            int state;
+            switch (board.side(n)) {
+            case RED:
+                state = board.spots(n);
+                break;
+            case BLUE:
+                state = capacity + board.spots(n);
+                break;
+            default:
+                state = 0;
+                break;
+            }
+            result = result * states(capacity) + state;
+        }
+        return result;
+    }
+
+    /** Set the squares of BOARD to those of position #I (see index),
+     *  with put, so that rollback can undo the change. */
+    static void setPosition(Board board, int i) {
+        Geometry geometry = board.geometry();
+        for (int n = 0; n < board.numSquares(); n += 1) {
+            int capacity = geometry.capacity(n);
+            int states = states(capacity);
+            int state = i % states;
+            i /= states;
+            if (state == 0) {
+                board.put(n, Board.INITIAL_CODE);
+            } else if (state <= capacity) {
+                board.put(n, Board.code(RED, state));
+            } else {
+                board.put(n, Board.code(BLUE, state - capacity));
+            }
+        }
+    }
+
+    /** Return the number of states of a square with capacity CAPACITY. */
+    private static int states(int capacity) {
+        return 2 * capacity + 1;
+    }
+
+    /** Return the number of longs needed for POSITIONS fields of BITS
+     *  bits. */
+    private static int words(int positions, int bits) {
+        return (int) (((long) positions * bits + Long.SIZE - 1) / Long.SIZE);
+    }
+
+    /** Identifies tablebase files ("J61T"). */
+    private static final int MAGIC = 0x4a363154;
+    /** Version of the file format. */
+    private static final int VERSION = 1;
+    /** Size of the header, in bytes. */
+    private static final int HEADER_BYTES = 20;
+    /** Log base 2 of the bits in a long. */
+    private static final int WORD_SHIFT = 6;
+
+    /** The contents of my file. */
+    private final ByteBuffer _data;
+    /** Board size. */
+    private final int _size;
+    /** Bits per field. */
+    private final int _bits;
+    /** Number of positions. */
+    private final int _positions;
+}
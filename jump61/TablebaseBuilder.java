@@ -0,0 +1,258 @@
+package jump61;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** A tool for making Tablebases by retrograde analysis.  Every move adds
+ *  one spot to the board, so positions fall into levels by their number
+ *  of spots, and every move leads from one level to the next.  The
+ *  builder first finds the positions reachable from the empty board,
+ *  level by level, and then works back from the last level to the first,
+ *  giving each position the distance of its best move, as judged by
+ *  Tablebase.better, from the distances of the positions it leads to.
+ *  The positions in each level are divided among several threads.  Run
+ *  as
+ *      java jump61.TablebaseBuilder SIZE FILE [THREADS]
+ *  Only sizes with at most MAX_POSITIONS positions (in practice, 2 and
+ *  3) can be solved: a 4x4 board has about 2.4 * 10^13.
+ *  @author Ryan Shih
+ */
+public class TablebaseBuilder {
+
+    /** Build a tablebase as directed by ARGS (see the class comment). */
+    public static void main(String[] args) {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: java jump61.TablebaseBuilder SIZE "
+                               + "FILE [THREADS]");
+            System.exit(1);
+        }
+        try {
+            int size = Integer.parseInt(args[0]);
+            int threads = args.length > 2 ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+            if (size < 2 || Tablebase.positions(size) > MAX_POSITIONS) {
+                System.err.println("board size is too large to solve");
+                System.exit(1);
+            }
+            if (threads < 1) {
+                System.err.println("number of threads must be positive");
+                System.exit(1);
+            }
+            int reached = build(size, threads, args[1]);
+            System.out.printf("%d positions written to %s%n", reached,
+                              args[1]);
+        } catch (NumberFormatException excp) {
+            System.err.println("bad number in arguments");
+            System.exit(1);
+        } catch (IOException excp) {
+            System.err.printf("could not write %s: %s%n", args[1],
+                              excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Solve SIZE x SIZE boards using THREADS threads and write the
+     *  result to FILENAME as a Tablebase.  Returns the number of
+     *  reachable positions.  Requires that there be at most
+     *  MAX_POSITIONS positions of that size. */
+    static int build(int size, int threads, String fileName)
+        throws IOException {
+        TablebaseBuilder builder = new TablebaseBuilder(size, threads);
+        try {
+            builder.findPositions();
+            int maxDistance = builder.solve();
+            int bits =
+                Integer.SIZE - Integer.numberOfLeadingZeros(maxDistance);
+            Tablebase.write(fileName, size, builder._distances, bits);
+        } finally {
+            builder._pool.shutdown();
+        }
+        return builder._reached;
+    }
+
+    /** A builder for SIZE x SIZE boards using THREADS threads. */
+    private TablebaseBuilder(int size, int threads) {
+        long positions = Tablebase.positions(size);
+        assert positions <= MAX_POSITIONS;
+        _size = size;
+        _threads = threads;
+        _pool = new ForkJoinPool(threads);
+        _distances = new byte[(int) positions];
+        _seen = new AtomicLongArray((int) ((positions + Long.SIZE - 1)
+                                           / Long.SIZE));
+    }
+
+    /** Fill _levels with the positions reachable from the empty board,
+     *  leaving out those whose games are over. */
+    private void findPositions() {
+        int[] level = { Tablebase.index(new Board(_size)) };
+        claim(level[0]);
+        while (level.length > 0) {
+            _levels.add(level);
+            _reached += level.length;
+            Utils.debug(1, "level %d: %d positions", _levels.size() - 1,
+                        level.length);
+            int[] positions = level;
+            ArrayList<int[]> parts = inParallel(positions.length,
+                (from, to) -> successors(positions, from, to));
+            int length = 0;
+            for (int[] part : parts) {
+                length += part.length;
+            }
+            level = new int[length];
+            length = 0;
+            for (int[] part : parts) {
+                System.arraycopy(part, 0, level, length, part.length);
+                length += part.length;
+            }
+        }
+    }
+
+    /** Return the positions reached by moves from POSITIONS[FROM ..
+     *  TO - 1] that have not been seen before, marking them seen. */
+    private int[] successors(int[] positions, int from, int to) {
+        Board board = new Board(_size);
+        int[] moves = new int[board.numSquares()];
+        int[] result = new int[Math.max(16, to - from)];
+        int count = 0;
+        for (int k = from; k < to; k += 1) {
+            int mark = board.mark();
+            Tablebase.setPosition(board, positions[k]);
+            Side player = board.whoseMove();
+            int numMoves = board.legalMoves(player, moves);
+            for (int j = 0; j < numMoves; j += 1) {
+                board.addSpot(player, moves[j]);
+                if (board.getWinner() == null) {
+                    int i = Tablebase.index(board);
+                    if (claim(i)) {
+                        if (count == result.length) {
+                            result = Arrays.copyOf(result, 2 * count);
+                        }
+                        result[count] = i;
+                        count += 1;
+                    }
+                }
+                board.undo();
+            }
+            board.rollback(mark);
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /** Record the distance of every position in _levels, working back
+     *  from the last level, and return the largest. */
+    private int solve() {
+        int maxDistance = 1;
+        for (int k = _levels.size() - 1; k >= 0; k -= 1) {
+            int[] positions = _levels.get(k);
+            for (int[] part : inParallel(positions.length,
+                     (from, to) -> solve(positions, from, to))) {
+                maxDistance = Math.max(maxDistance, part[0]);
+            }
+        }
+        return maxDistance;
+    }
+
+    /** Record the distances of POSITIONS[FROM .. TO - 1], assuming those
+     *  of all positions they lead to are known, and return the largest as
+     *  the only element of an array. */
+    private int[] solve(int[] positions, int from, int to) {
+        Board board = new Board(_size);
+        int[] moves = new int[board.numSquares()];
+        int maxDistance = 0;
+        for (int k = from; k < to; k += 1) {
+            int mark = board.mark();
+            Tablebase.setPosition(board, positions[k]);
+            Side player = board.whoseMove();
+            int numMoves = board.legalMoves(player, moves);
+            int best = 0;
+            for (int j = 0; j < numMoves; j += 1) {
+                board.addSpot(player, moves[j]);
+                int d = board.getWinner() != null ? 1
+                    : 1 + _distances[Tablebase.index(board)];
+                board.undo();
+                if (Tablebase.better(d, best)) {
+                    best = d;
+                }
+            }
+            board.rollback(mark);
+            if (best > Byte.MAX_VALUE) {
+                throw new IllegalStateException("game too long to record");
+            }
+            _distances[positions[k]] = (byte) best;
+            maxDistance = Math.max(maxDistance, best);
+        }
+        return new int[] { maxDistance };
+    }
+
+    /** Mark position #I as seen, returning true iff it was not already
+     *  marked. */
+    private boolean claim(int i) {
+        int w = i / Long.SIZE;
+        long bit = 1L << (i % Long.SIZE);
+        while (true) {
+            long old = _seen.get(w);
+            if ((old & bit) != 0) {
+                return false;
+            }
+            if (_seen.compareAndSet(w, old, old | bit)) {
+                return true;
+            }
+        }
+    }
+
+    /** A piece of work on a range of the elements of an array. */
+    private interface Part {
+        /** Return the result of working on elements FROM .. TO - 1. */
+        int[] run(int from, int to);
+    }
+
+    /** Divide the range 0 .. LENGTH - 1 into pieces, run PART on each in
+     *  _pool, and return the results. */
+    private ArrayList<int[]> inParallel(int length, Part part) {
+        int pieces = Math.min(length, _threads * PIECES_PER_THREAD);
+        ArrayList<Future<int[]>> tasks = new ArrayList<>();
+        for (int p = 0; p < pieces; p += 1) {
+            int from = (int) ((long) length * p / pieces),
+                to = (int) ((long) length * (p + 1) / pieces);
+            tasks.add(_pool.submit(() -> part.run(from, to)));
+        }
+        ArrayList<int[]> result = new ArrayList<>();
+        for (Future<int[]> task : tasks) {
+            try {
+                result.add(task.get());
+            } catch (InterruptedException | ExecutionException excp) {
+                throw new Error(excp);
+            }
+        }
+        return result;
+    }
+
+    /** Largest number of positions (reachable or not) of a board size
+     *  that can be solved. */
+    static final long MAX_POSITIONS = 1 << 30;
+
+    /** Number of pieces into which each level is divided per thread, to
+     *  even out the threads' work. */
+    private static final int PIECES_PER_THREAD = 8;
+
+    /** Number of squares on a side. */
+    private final int _size;
+    /** Number of threads. */
+    private final int _threads;
+    /** The threads. */
+    private final ForkJoinPool _pool;
+    /** The distance of each position, or 0 if it is unreachable. */
+    private final byte[] _distances;
+    /** Bit set marking the positions found so far. */
+    private final AtomicLongArray _seen;
+    /** The reachable positions, by level. */
+    private final ArrayList<int[]> _levels = new ArrayList<>();
+    /** Number of reachable positions. */
+    private int _reached;
+}
@@ -0,0 +1,194 @@
+package jump61;
+
+import java.util.Arrays;
+
+/** A fixed-size table of search results, indexed by Board.zobrist(), for
+ *  use by AI search.  Each entry records, for one position, a score, the
+ *  depth to which it was searched, whether the score is exact or a bound,
+ *  the best move found, and the search (age) that stored it.  Scores are
+ *  always from the point of view of the side to move in the position.
+ *
+ *  Entries live in two parallel long arrays, one holding the packed data
+ *  and the other the position's key XORed with the data.  There are no
+ *  locks: several threads may read and write the table at once, and a
+ *  read that sees half of a concurrent write fails the key check and is
+ *  treated as a miss.  Entries come in buckets of two.  A new entry
+ *  replaces the one for the same position, or else the one in its bucket
+ *  that is least valuable, judged by depth and by how many searches ago
+ *  it was stored.
+ *  @author Ryan Shih
+ */
+class TranspositionTable {
+
+    /** Bound types: the score is exact, a lower bound, or an upper
+     *  bound on the true value. */
+    static final int EXACT = 1, LOWER = 2, UPPER = 3;
+
+    /** A table occupying about MEGABYTES megabytes (at least one entry). */
+    TranspositionTable(int megabytes) {
+        long entries = ((long) megabytes << 20) / ENTRY_BYTES;
+        entries = Math.max(2, Math.min(entries, MAX_ENTRIES));
+        int size = Integer.highestOneBit((int) entries);
+        _megabytes = megabytes;
+        _keys = new long[size];
+        _data = new long[size];
+        _mask = size - 1;
+    }
+
+    /** Return the size of this table in megabytes, as requested when it
+     *  was created. */
+    int megabytes() {
+        return _megabytes;
+    }
+
+    /** Return the number of entries this table can hold. */
+    int capacity() {
+        return _data.length;
+    }
+
+    /** Return the packed entry for the position with Zobrist key KEY, or
+     *  0 if there is none.  Use score, depth, bound, and move to unpack
+     *  the result. */
+    long probe(long key) {
+        int i = index(key);
+        long data = _data[i];
+        if ((_keys[i] ^ data) == key && data != 0) {
+            return data;
+        }
+        data = _data[i + 1];
+        if ((_keys[i + 1] ^ data) == key && data != 0) {
+            return data;
+        }
+        return 0;
+    }
+
+    /** Record that the position with Zobrist key KEY has value SCORE (of
+     *  kind BOUND: EXACT, LOWER, or UPPER) when searched to DEPTH, and
+     *  that its best move is MOVE (-1 if none). */
+    void store(long key, int score, int depth, int bound, int move) {
+        int i = index(key);
+        int age = _age;
+        int slot;
+        if ((_keys[i] ^ _data[i]) == key) {
+            slot = i;
+        } else if ((_keys[i + 1] ^ _data[i + 1]) == key) {
+            slot = i + 1;
+        } else if (worth(_data[i], age) <= worth(_data[i + 1], age)) {
+            slot = i;
+        } else {
+            slot = i + 1;
+        }
+        long old = _data[slot];
+        if (old != 0 && (_keys[slot] ^ old) == key && bound != EXACT
+            && depth < depth(old) && age(old) == age) {
+            return;
+        }
+        long data = pack(score, depth, bound, move, age);
+        _data[slot] = data;
+        _keys[slot] = key ^ data;
+    }
+
+    /** Start a new search, making entries from earlier searches easier to
+     *  replace. */
+    void newSearch() {
+        _age = (_age + 1) & AGE_MASK;
+    }
+
+    /** Remove all entries. */
+    void clear() {
+        Arrays.fill(_keys, 0);
+        Arrays.fill(_data, 0);
+    }
+
+    /** Return the score recorded in packed entry DATA. */
+    static int score(long data) {
+        return (int) ((data >>> SCORE_SHIFT) & SCORE_MASK) - SCORE_BIAS;
+    }
+
+    /** Return the search depth recorded in packed entry DATA. */
+    static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & DEPTH_MASK;
+    }
+
+    /** Return the bound type recorded in packed entry DATA. */
+    static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & BOUND_MASK;
+    }
+
+    /** Return the best move recorded in packed entry DATA, or -1. */
+    static int move(long data) {
+        return (int) (data & MOVE_MASK) - 1;
+    }
+
+    /** Return the age recorded in packed entry DATA. */
+    private static int age(long data) {
+        return (int) (data >>> AGE_SHIFT) & AGE_MASK;
+    }
+
+    /** Return SCORE, DEPTH, BOUND, MOVE, and AGE packed into one long. */
+    private static long pack(int score, int depth, int bound, int move,
+                             int age) {
+        return ((long) (move + 1) & MOVE_MASK)
+            | (((long) (score + SCORE_BIAS) & SCORE_MASK) << SCORE_SHIFT)
+            | ((long) Math.min(depth, DEPTH_MASK) << DEPTH_SHIFT)
+            | ((long) bound << BOUND_SHIFT)
+            | ((long) age << AGE_SHIFT);
+    }
+
+    /** Return how valuable the entry DATA is to keep when the current
+     *  age is AGE: deeper is better, and each search since the entry was
+     *  stored counts against it. */
+    private static int worth(long data, int age) {
+        if (data == 0) {
+            return Integer.MIN_VALUE;
+        }
+        return depth(data) - AGE_PENALTY * ((age - age(data)) & AGE_MASK);
+    }
+
+    /** Return the index of the first entry of the bucket for KEY. */
+    private int index(long key) {
+        return (int) (key ^ (key >>> 32)) & _mask & ~1;
+    }
+
+    /** Bytes per entry. */
+    private static final int ENTRY_BYTES = 16;
+    /** Largest number of entries in a table. */
+    private static final long MAX_ENTRIES = 1 << 30;
+
+    /** Layout of packed entries: the move + 1 in the low-order bits, then
+     *  the biased score, the depth, the bound type, and the age. */
+    private static final int
+        MOVE_BITS = 21, SCORE_BITS = 24, DEPTH_BITS = 8, BOUND_BITS = 2,
+        AGE_BITS = 8;
+    /** Positions of fields in packed entries. */
+    private static final int
+        SCORE_SHIFT = MOVE_BITS,
+        DEPTH_SHIFT = SCORE_SHIFT + SCORE_BITS,
+        BOUND_SHIFT = DEPTH_SHIFT + DEPTH_BITS,
+        AGE_SHIFT = BOUND_SHIFT + BOUND_BITS;
+    /** Masks for fields of packed entries. */
+    private static final long
+        MOVE_MASK = (1L << MOVE_BITS) - 1,
+        SCORE_MASK = (1L << SCORE_BITS) - 1;
+    /** Masks for fields of packed entries. */
+    private static final int
+        DEPTH_MASK = (1 << DEPTH_BITS) - 1,
+        BOUND_MASK = (1 << BOUND_BITS) - 1,
+        AGE_MASK = (1 << AGE_BITS) - 1;
+    /** Bias added to scores so that they are stored as non-negative. */
+    private static final int SCORE_BIAS = 1 << (SCORE_BITS - 1);
+    /** Depth by which an entry's worth drops for each search since it
+     *  was stored. */
+    private static final int AGE_PENALTY = 4;
+
+    /** Size requested for this table. */
+    private final int _megabytes;
+    /** Keys of entries, each XORed with the corresponding _data entry. */
+    private final long[] _keys;
+    /** Packed entries; 0 for empty entries. */
+    private final long[] _data;
+    /** Mask selecting an index from a key. */
+    private final int _mask;
+    /** The current age. */
+    private int _age;
+}